@@ -1,5 +1,7 @@
 package edu.neu.ccs.prl.meringue;
 
+import java.io.File;
+
 public final class AnalysisForkMain {
     private AnalysisForkMain() {
         throw new AssertionError(
@@ -12,10 +14,25 @@ public final class AnalysisForkMain {
         String replayerClassName = args[2];
         int maxTraceSize = Integer.parseInt(args[3]);
         int port = Integer.parseInt(args[4]);
+        // Maximum time in milliseconds to replay an input in this JVM or -1 if the analyzing JVM enforces the timeout
+        long timeout = Long.parseLong(args[5]);
+        // Optional file for a ring buffer shared with the analyzing JVM
+        File ringBufferFile = args.length > 6 ? new File(args[6]) : null;
         Replayer replayer = (Replayer) Class.forName(replayerClassName).getDeclaredConstructor().newInstance();
         replayer.configure(testClassName, testMethodName, AnalysisForkMain.class.getClassLoader());
-        try (ReplayerManager manager = new AnalysisReplayerManager(port, maxTraceSize)) {
-            replayer.accept(manager);
+        try (AnalysisReplayerManager manager = new AnalysisReplayerManager(port, maxTraceSize, timeout,
+                                                                           ringBufferFile)) {
+            while (true) {
+                try {
+                    replayer.accept(manager);
+                    return;
+                } catch (Throwable t) {
+                    // Continue replaying inputs if the replayer was stopped by the watchdog
+                    if (!manager.recover()) {
+                        throw t;
+                    }
+                }
+            }
         }
     }
 }
\ No newline at end of file
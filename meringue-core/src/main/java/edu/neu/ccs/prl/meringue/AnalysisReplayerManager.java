@@ -5,15 +5,109 @@ import org.jacoco.agent.rt.RT;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
 
+/**
+ * Receives inputs from the analyzing JVM and sends back the result of replaying each input.
+ * <p>
+ * The analyzing JVM may send several inputs before receiving any results. Each input is preceded by a non-negative
+ * sequence number which is echoed back as the first message of the result for that input. The analyzing JVM signals
+ * that no more inputs will be sent by sending a sequence number of {@code -1}. Inputs are replayed in the order in
+ * which they are received. Each input is followed by a flag indicating whether the complete coverage of the input is
+ * needed instead of only the probes not sent for any previous input. Each result reports the time spent replaying
+ * the input in nanoseconds. Each result that did not time out also reports the CPU time in nanoseconds used and the
+ * number of bytes allocated by the thread that replayed the input, or {@code -1} if these cannot be measured. It ends
+ * with the amount of heap memory retained after the most recent garbage collection and the maximum heap size in
+ * bytes, which the analyzing JVM uses to decide when to retire this JVM.
+ * <p>
+ * If a timeout is provided, each input is replayed under a deadline enforced by a {@link ReplayWatchdog}. The result
+ * of an input whose deadline elapsed only indicates that the input timed out and whether this JVM is about to exit
+ * because the thread replaying the input could not be reclaimed.
+ * <p>
+ * If the system properties of this JVM configure a {@link SlowInputRecorder}, a flight recording is captured for each
+ * input whose replay exceeds the recorder's threshold.
+ * <p>
+ * If a shared ring buffer is provided, coverage is placed in the buffer and only its position and length are sent
+ * over the connection. Coverage that does not fit in the buffer is sent over the connection.
+ */
 public final class AnalysisReplayerManager implements Closeable, ReplayerManager {
     private final ForkConnection connection;
     private final StackTraceCleaner cleaner;
+    /**
+     * Reduces the coverage sent for each input to the probes not sent for any previous input. The analyzing JVM only
+     * uses the union of the coverage of the inputs, so there is no need to resend probes.
+     */
+    private final ExecutionDataDelta delta = new ExecutionDataDelta();
+    /**
+     * Buffer shared with the analyzing JVM or {@code null} if coverage is only sent over the connection.
+     */
+    private final SharedRingBuffer ringBuffer;
+    /**
+     * Watchdog enforcing the timeout or {@code null} if there is no timeout.
+     */
+    private final ReplayWatchdog watchdog;
+    /**
+     * Recorder capturing flight recordings of slow inputs or {@code null} if slow inputs should not be recorded.
+     */
+    private final SlowInputRecorder recorder = SlowInputRecorder.fromSystemProperties();
     private File nextInput = null;
+    private int nextSequenceNumber;
+    private boolean nextFullCoverage;
+    /**
+     * Sequence number of the input currently being replayed.
+     */
+    private int sequenceNumber;
+    /**
+     * Indicates whether the complete coverage of the input currently being replayed should be sent.
+     */
+    private boolean fullCoverage;
+    /**
+     * Value of {@link System#nanoTime()} when the input currently being replayed was handed out.
+     */
+    private long startTime;
+    /**
+     * CPU time used by the thread replaying inputs when the input currently being replayed was handed out.
+     */
+    private long startCpuTime;
+    /**
+     * Number of bytes allocated by the thread replaying inputs when the input currently being replayed was handed out.
+     */
+    private long startAllocatedBytes;
+    /**
+     * Indicates whether an input has been handed out whose result has not been sent.
+     */
+    private boolean pending;
+    /**
+     * Indicates whether the thread replaying the current input was abandoned.
+     */
+    private boolean abandoned;
+    /**
+     * Indicates whether an input has been handed out.
+     */
+    private boolean started;
 
     public AnalysisReplayerManager(int port, int maxTraceSize) throws IOException {
+        this(port, maxTraceSize, -1, null);
+    }
+
+    /**
+     * @param port           the port at which the analyzing JVM is listening
+     * @param maxTraceSize   the maximum number of frames to include in stack traces of failures
+     * @param timeout        the maximum amount of time in milliseconds to replay a single input or {@code -1} if there
+     *                       is no timeout
+     * @param ringBufferFile file backing a ring buffer shared with the analyzing JVM or {@code null} if coverage
+     *                       should only be sent over the connection
+     * @throws IOException if an I/O error occurs connecting to the analyzing JVM or mapping the ring buffer
+     */
+    public AnalysisReplayerManager(int port, int maxTraceSize, long timeout, File ringBufferFile)
+            throws IOException {
+        this.ringBuffer = ringBufferFile == null ? null : new SharedRingBuffer(ringBufferFile);
         this.connection = new ForkConnection(port);
         this.cleaner = new StackTraceCleaner(maxTraceSize);
+        this.watchdog = timeout < 0 ? null : new ReplayWatchdog(timeout, this::abandon);
     }
 
     @Override
@@ -21,10 +115,31 @@ public final class AnalysisReplayerManager implements Closeable, ReplayerManager
         if (!hasNextInput()) {
             throw new IllegalStateException();
         }
-        // Reset the JaCoCo coverage
-        RT.getAgent().reset();
+        boolean resetStaticState = started;
+        started = true;
         File temp = nextInput;
         nextInput = null;
+        sequenceNumber = nextSequenceNumber;
+        fullCoverage = nextFullCoverage;
+        if (recorder != null) {
+            recorder.start(temp);
+        }
+        startCpuTime = ThreadUsageUtil.getCpuTime();
+        startAllocatedBytes = ThreadUsageUtil.getAllocatedBytes();
+        startTime = System.nanoTime();
+        pending = true;
+        // Start the deadline before resetting static state, so that rerun static initializers are subject to the
+        // timeout and are measured as part of the input
+        if (watchdog != null) {
+            watchdog.start();
+        }
+        if (resetStaticState) {
+            // Reset static state left behind by previous inputs; does nothing unless classes were instrumented by
+            // the StaticResetAgent
+            StaticStateRegistry.reset();
+        }
+        // Reset the JaCoCo coverage
+        RT.getAgent().reset();
         return temp;
     }
 
@@ -32,9 +147,13 @@ public final class AnalysisReplayerManager implements Closeable, ReplayerManager
     public boolean hasNextInput() {
         if (nextInput == null) {
             try {
-                nextInput = connection.receive(File.class);
-            } catch (ClassNotFoundException e) {
-                throw new AssertionError(e);
+                int received = connection.readInt();
+                if (received == -1) {
+                    return false;
+                }
+                nextSequenceNumber = received;
+                nextInput = connection.readFile();
+                nextFullCoverage = connection.readBoolean();
             } catch (IOException e) {
                 return false;
             }
@@ -44,22 +163,144 @@ public final class AnalysisReplayerManager implements Closeable, ReplayerManager
 
     @Override
     public void handleResult(Throwable failure) throws IOException {
-        // Send current JaCoCo coverage
-        connection.send(RT.getAgent().getExecutionData(false));
+        boolean timedOut = watchdog != null && watchdog.finish();
+        // Measure before stopping the recording, which writes the recording to disk on this thread
+        long elapsed = System.nanoTime() - startTime;
+        long cpuTime = ThreadUsageUtil.difference(startCpuTime, ThreadUsageUtil.getCpuTime());
+        long allocatedBytes = ThreadUsageUtil.difference(startAllocatedBytes, ThreadUsageUtil.getAllocatedBytes());
+        finishRecording();
+        synchronized (this) {
+            if (abandoned) {
+                // This JVM is exiting
+                return;
+            }
+            pending = false;
+            if (timedOut) {
+                writeTimeout(false);
+            } else {
+                writeResult(failure, elapsed, cpuTime, allocatedBytes);
+            }
+        }
+    }
+
+    /**
+     * Sends a timeout result for the current input if the thread replaying the input was reclaimed by the watchdog
+     * without sending a result; for example, because the replayer did not catch the {@link ThreadDeath} raised by
+     * {@link Thread#stop()}.
+     *
+     * @return true if a timeout result was sent
+     * @throws IOException if an I/O error occurs sending the result
+     */
+    public boolean recover() throws IOException {
+        boolean timedOut = watchdog != null && watchdog.finish();
+        finishRecording();
+        synchronized (this) {
+            if (!pending || !timedOut || abandoned) {
+                return false;
+            }
+            pending = false;
+            writeTimeout(false);
+            return true;
+        }
+    }
+
+    /**
+     * Called by the watchdog if the thread replaying the current input cannot be reclaimed. Reports the timeout and
+     * halts this JVM once the analyzing JVM closes the connection; the analyzing JVM launches a replacement.
+     */
+    private void abandon() {
+        // This JVM is halted, so the recording would not be written on exit
+        finishRecording();
+        synchronized (this) {
+            abandoned = true;
+            try {
+                writeTimeout(true);
+                connection.awaitClose();
+            } catch (IOException e) {
+                // The analyzing JVM detects the failure when the connection is closed
+            }
+        }
+        Runtime.getRuntime().halt(1);
+    }
+
+    private void finishRecording() {
+        if (recorder != null) {
+            recorder.finish();
+        }
+    }
+
+    private void writeTimeout(boolean exiting) throws IOException {
+        connection.writeInt(sequenceNumber);
+        connection.writeLong(System.nanoTime() - startTime);
+        connection.writeBoolean(true);
+        connection.writeBoolean(exiting);
+        connection.flush();
+    }
+
+    private void writeResult(Throwable failure, long elapsed, long cpuTime, long allocatedBytes)
+            throws IOException {
+        connection.writeInt(sequenceNumber);
+        connection.writeLong(elapsed);
+        // Did not time out
+        connection.writeBoolean(false);
+        connection.writeLong(cpuTime);
+        connection.writeLong(allocatedBytes);
+        // Send newly covered probes unless all covered probes were requested
+        byte[] execData = RT.getAgent().getExecutionData(false);
+        byte[] newlyCovered = delta.compute(execData);
+        if (!fullCoverage) {
+            execData = newlyCovered;
+        }
+        long position = ringBuffer == null ? -1 : ringBuffer.write(execData);
+        connection.writeBoolean(position != -1);
+        if (position == -1) {
+            connection.writeBytes(execData);
+        } else {
+            connection.writeLong(position);
+            connection.writeInt(execData.length);
+        }
         // Send the failure
         if (failure == null) {
-            connection.send(false);
+            connection.writeBoolean(false);
         } else {
             Throwable rootCause = cleaner.getRootCause(failure);
             StackTraceElement[] trace = cleaner.cleanStackTrace(rootCause).toArray(new StackTraceElement[0]);
-            connection.send(true);
-            connection.send(new Failure(rootCause.getClass().getName(), trace));
-            connection.send(rootCause.getMessage());
+            connection.writeBoolean(true);
+            connection.writeFailure(new Failure(rootCause.getClass().getName(), trace));
+            connection.writeString(rootCause.getMessage());
+        }
+        connection.writeLong(getRetainedHeap());
+        connection.writeLong(Runtime.getRuntime().maxMemory());
+        // Flush the complete result at once
+        connection.flush();
+    }
+
+    /**
+     * Returns the amount of heap memory in bytes that was in use after the most recent garbage collection of each heap
+     * memory pool.
+     */
+    private static long getRetainedHeap() {
+        long retained = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage usage = pool.getCollectionUsage();
+            if (pool.getType() == MemoryType.HEAP && usage != null) {
+                retained += usage.getUsed();
+            }
         }
+        return retained;
     }
 
     @Override
-    public void close() {
+    public void close() throws IOException {
+        if (watchdog != null) {
+            watchdog.close();
+        }
+        if (recorder != null) {
+            recorder.close();
+        }
         connection.close();
+        if (ringBuffer != null) {
+            ringBuffer.close();
+        }
     }
 }
@@ -0,0 +1,114 @@
+package edu.neu.ccs.prl.meringue;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reduces JaCoCo execution data to the probes that were not present in any previously reduced execution data.
+ * <p>
+ * Execution data is read and written in JaCoCo's exec file format. Header and session info blocks are copied
+ * unchanged. Execution data blocks are rewritten to only contain the probes that are not in the cumulative union of
+ * probes seen by this instance; blocks without any new probes are omitted. The probe arrays are compared in their
+ * packed form without being decoded.
+ * <p>
+ * Merging the reduced execution data for a sequence of inputs produces the same probes as merging the original
+ * execution data.
+ */
+public final class ExecutionDataDelta {
+    private static final byte BLOCK_HEADER = 0x01;
+    private static final byte BLOCK_SESSION_INFO = 0x10;
+    private static final byte BLOCK_EXECUTION_DATA = 0x11;
+    /**
+     * Packed probes seen for each class keyed by JaCoCo class id.
+     */
+    private final Map<Long, byte[]> union = new HashMap<>();
+
+    /**
+     * Returns the specified execution data reduced to the probes that were not present in previously reduced
+     * execution data.
+     *
+     * @param execData execution data in JaCoCo's exec file format
+     * @return the reduced execution data
+     * @throws IOException if the specified execution data is malformed
+     */
+    public byte[] compute(byte[] execData) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(execData));
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        for (int type = in.read(); type != -1; type = in.read()) {
+            switch (type) {
+                case BLOCK_HEADER:
+                    out.writeByte(type);
+                    // Magic number and format version
+                    out.writeChar(in.readChar());
+                    out.writeChar(in.readChar());
+                    break;
+                case BLOCK_SESSION_INFO:
+                    out.writeByte(type);
+                    out.writeUTF(in.readUTF());
+                    out.writeLong(in.readLong());
+                    out.writeLong(in.readLong());
+                    break;
+                case BLOCK_EXECUTION_DATA:
+                    long id = in.readLong();
+                    String name = in.readUTF();
+                    int length = readVarInt(in);
+                    byte[] probes = new byte[(length + 7) / 8];
+                    in.readFully(probes);
+                    if (removeSeen(id, probes)) {
+                        out.writeByte(type);
+                        out.writeLong(id);
+                        out.writeUTF(name);
+                        writeVarInt(out, length);
+                        out.write(probes);
+                    }
+                    break;
+                default:
+                    throw new IOException("Unknown block type in execution data: " + type);
+            }
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Clears the bits of the specified packed probes that have already been seen for the specified class and adds the
+     * remaining bits to the seen probes.
+     *
+     * @return true if any bits remain
+     */
+    private boolean removeSeen(long id, byte[] probes) {
+        byte[] seen = union.get(id);
+        if (seen == null || seen.length != probes.length) {
+            // A different class with the same id would be reported as incompatible when merged
+            union.put(id, probes.clone());
+            return true;
+        }
+        boolean remaining = false;
+        for (int i = 0; i < probes.length; i++) {
+            probes[i] &= ~seen[i];
+            if (probes[i] != 0) {
+                seen[i] |= probes[i];
+                remaining = true;
+            }
+        }
+        return remaining;
+    }
+
+    private static int readVarInt(DataInput in) throws IOException {
+        int value = 0xFF & in.readByte();
+        if ((value & 0x80) == 0) {
+            return value;
+        }
+        return (value & 0x7F) | (readVarInt(in) << 7);
+    }
+
+    private static void writeVarInt(DataOutput out, int value) throws IOException {
+        if ((value & 0xFFFFFF80) == 0) {
+            out.writeByte(value);
+        } else {
+            out.writeByte(0x80 | (value & 0x7F));
+            writeVarInt(out, value >>> 7);
+        }
+    }
+}
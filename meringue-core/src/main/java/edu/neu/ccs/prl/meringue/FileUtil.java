@@ -9,7 +9,9 @@ import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
@@ -30,6 +32,22 @@ public final class FileUtil {
      *                              null, or {@code jar} is null.
      */
     public static void buildManifestJar(Collection<File> classpathElements, File jar) throws IOException {
+        buildManifestJar(classpathElements, jar, Collections.emptyMap());
+    }
+
+    /**
+     * Creates a Java Archive (JAR) file containing only a manifest that specifies a value for the Class-Path
+     * attribute and the specified additional attributes.
+     *
+     * @param classpathElements elements to be included on the classpath
+     * @param jar               the JAR file that should be created
+     * @param attributes        additional attributes to be included in the manifest
+     * @throws IOException          if an I/O error occurs
+     * @throws NullPointerException if {@code classpathElements} is null, an element of {@code classpathElements} is
+     *                              null, {@code jar} is null, or {@code attributes} is null.
+     */
+    public static void buildManifestJar(Collection<File> classpathElements, File jar, Map<String, String> attributes)
+            throws IOException {
         Set<File> classPathFilesCopy = new HashSet<>(classpathElements);
         String[] paths = classPathFilesCopy.stream()
                                            .map(f -> f.isFile() ? f.getAbsolutePath() : f.getAbsolutePath() + "/")
@@ -38,6 +56,7 @@ public final class FileUtil {
         Manifest manifest = new Manifest();
         manifest.getMainAttributes().putValue("Manifest-Version", "1.0");
         manifest.getMainAttributes().putValue("Class-Path", String.join(" ", paths));
+        attributes.forEach(manifest.getMainAttributes()::putValue);
         JarOutputStream jos =
                 new JarOutputStream(new BufferedOutputStream(Files.newOutputStream(jar.toPath())), manifest);
         jos.close();
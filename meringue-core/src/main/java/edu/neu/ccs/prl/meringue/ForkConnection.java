@@ -1,16 +1,24 @@
 package edu.neu.ccs.prl.meringue;
 
-import java.io.Closeable;
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.*;
 import java.net.InetAddress;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
 
+/**
+ * Connection between two JVMs over a socket on the loopback interface.
+ * <p>
+ * Messages are written in a compact binary format. Variable-length values (byte arrays and strings) are prefixed with
+ * their length, {@code -1} indicating a {@code null} value. Unlike an {@link ObjectOutputStream}, the connection
+ * retains no references to previously sent values.
+ * <p>
+ * Writes are buffered; {@link #flush()} must be called to ensure that written messages are sent.
+ */
 public final class ForkConnection implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
     private final Socket socket;
-    private final ObjectInputStream ois;
-    private final ObjectOutputStream oos;
+    private final DataInputStream in;
+    private final DataOutputStream out;
 
     /**
      * Creates a new connection at the specified port on the loopback interface.
@@ -26,11 +34,8 @@ public final class ForkConnection implements Closeable {
 
     public ForkConnection(Socket socket) throws IOException {
         this.socket = socket;
-        this.oos = new ObjectOutputStream(socket.getOutputStream());
-        // Flush the header for the ObjectOutputStream so that the ObjectInputStream on the other end can
-        // read it and does not hang
-        this.oos.flush();
-        this.ois = new ObjectInputStream(socket.getInputStream());
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
     }
 
     @Override
@@ -48,12 +53,116 @@ public final class ForkConnection implements Closeable {
         return socket.isClosed();
     }
 
-    public void send(Object o) throws IOException {
-        oos.writeObject(o);
-        oos.flush();
+    public void flush() throws IOException {
+        out.flush();
     }
 
-    public <T> T receive(Class<T> messageType) throws IOException, ClassNotFoundException {
-        return messageType.cast(ois.readObject());
+    /**
+     * Discards received data until the other end closes the connection. Closing a socket with unread data can cause
+     * the connection to be reset, which can discard data that was sent but not yet read by the other end.
+     */
+    public void awaitClose() {
+        try {
+            while (in.skip(BUFFER_SIZE) > 0 || in.read() != -1) {
+                // Discard
+            }
+        } catch (IOException e) {
+            // Closed
+        }
+    }
+
+    public void writeInt(int value) throws IOException {
+        out.writeInt(value);
+    }
+
+    public int readInt() throws IOException {
+        return in.readInt();
+    }
+
+    public void writeLong(long value) throws IOException {
+        out.writeLong(value);
+    }
+
+    public long readLong() throws IOException {
+        return in.readLong();
+    }
+
+    public void writeBoolean(boolean value) throws IOException {
+        out.writeBoolean(value);
+    }
+
+    public boolean readBoolean() throws IOException {
+        return in.readBoolean();
+    }
+
+    public void writeBytes(byte[] value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(value.length);
+            out.write(value);
+        }
+    }
+
+    /**
+     * Reads a byte array. If the specified buffer has the same length as the array being read, the array is read
+     * directly into the buffer and the buffer is returned. Otherwise, a new array is allocated.
+     *
+     * @param buffer a buffer that may be reused to store the read array or {@code null}
+     * @return the read array
+     * @throws IOException if an I/O error occurs
+     */
+    public byte[] readBytes(byte[] buffer) throws IOException {
+        int length = in.readInt();
+        if (length == -1) {
+            return null;
+        } else if (length < 0) {
+            throw new StreamCorruptedException("Invalid length: " + length);
+        }
+        byte[] result = buffer != null && buffer.length == length ? buffer : new byte[length];
+        in.readFully(result);
+        return result;
+    }
+
+    public byte[] readBytes() throws IOException {
+        return readBytes(null);
+    }
+
+    public void writeString(String value) throws IOException {
+        writeBytes(value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public String readString() throws IOException {
+        byte[] value = readBytes();
+        return value == null ? null : new String(value, StandardCharsets.UTF_8);
+    }
+
+    public void writeFile(File file) throws IOException {
+        writeString(file == null ? null : file.getPath());
+    }
+
+    public File readFile() throws IOException {
+        String path = readString();
+        return path == null ? null : new File(path);
+    }
+
+    public void writeFailure(Failure failure) throws IOException {
+        writeString(failure.getType());
+        writeInt(failure.getTrace().size());
+        for (StackTraceElement element : failure.getTrace()) {
+            writeString(element.getClassName());
+            writeString(element.getMethodName());
+            writeString(element.getFileName());
+            writeInt(element.getLineNumber());
+        }
+    }
+
+    public Failure readFailure() throws IOException {
+        String type = readString();
+        StackTraceElement[] trace = new StackTraceElement[readInt()];
+        for (int i = 0; i < trace.length; i++) {
+            trace[i] = new StackTraceElement(readString(), readString(), readString(), readInt());
+        }
+        return new Failure(type, trace);
     }
-}
\ No newline at end of file
+}
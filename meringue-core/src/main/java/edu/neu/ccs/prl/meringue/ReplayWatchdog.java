@@ -0,0 +1,135 @@
+package edu.neu.ccs.prl.meringue;
+
+import java.io.Closeable;
+
+/**
+ * Enforces a deadline on the replay of each input within a forked JVM. When the deadline for an input elapses, the
+ * thread replaying the input is interrupted. If the thread does not finish the input within a grace period, it is
+ * stopped using {@link Thread#stop()} where the JDK still supports it. If the thread does not finish the input within a
+ * second grace period, it cannot be reclaimed and the abandon handler is run.
+ * <p>
+ * Thread-safe.
+ */
+public final class ReplayWatchdog implements Closeable {
+    /**
+     * Amount of time in milliseconds that a thread is given to finish an input after each attempt to reclaim it.
+     */
+    public static final long GRACE_PERIOD_MILLIS = 2000;
+    private final long timeout;
+    private final Runnable abandonHandler;
+    /**
+     * Thread replaying the current input or {@code null} if no input is being replayed.
+     */
+    private Thread target;
+    /**
+     * Value of {@link System#nanoTime()} at which the next escalation should occur.
+     */
+    private long deadline;
+    /**
+     * Number of escalations performed for the current input.
+     */
+    private int stage;
+    private boolean expired;
+    private boolean closed;
+
+    /**
+     * Creates and starts a watchdog.
+     *
+     * @param timeout        the maximum amount of time in milliseconds to replay a single input
+     * @param abandonHandler run on the watchdog's thread if the thread replaying an input cannot be reclaimed
+     */
+    public ReplayWatchdog(long timeout, Runnable abandonHandler) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("Invalid timeout: " + timeout);
+        } else if (abandonHandler == null) {
+            throw new NullPointerException();
+        }
+        this.timeout = timeout;
+        this.abandonHandler = abandonHandler;
+        Thread watchdog = new Thread(this::run, "meringue-replay-watchdog");
+        watchdog.setDaemon(true);
+        watchdog.start();
+    }
+
+    /**
+     * Starts the deadline for an input replayed by the calling thread.
+     */
+    public synchronized void start() {
+        target = Thread.currentThread();
+        deadline = System.nanoTime() + timeout * 1_000_000L;
+        stage = 0;
+        expired = false;
+        notifyAll();
+    }
+
+    /**
+     * Ends the deadline for the input replayed by the calling thread. If the deadline elapsed, the interrupted status
+     * of the calling thread is cleared.
+     *
+     * @return true if the deadline elapsed before the input was finished
+     */
+    public synchronized boolean finish() {
+        if (target == Thread.currentThread()) {
+            target = null;
+            notifyAll();
+        }
+        if (expired) {
+            // Clear the interrupt sent to reclaim the thread
+            Thread.interrupted();
+        }
+        return expired;
+    }
+
+    private void run() {
+        synchronized (this) {
+            while (true) {
+                if (closed) {
+                    return;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (target == null || remaining > 0) {
+                    try {
+                        if (target == null) {
+                            wait();
+                        } else {
+                            wait(remaining / 1_000_000L + 1);
+                        }
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                } else if (stage == 0) {
+                    expired = true;
+                    target.interrupt();
+                    escalate();
+                } else if (stage == 1) {
+                    stop(target);
+                    escalate();
+                } else {
+                    break;
+                }
+            }
+        }
+        // The thread cannot be reclaimed
+        abandonHandler.run();
+    }
+
+    private void escalate() {
+        stage++;
+        deadline = System.nanoTime() + GRACE_PERIOD_MILLIS * 1_000_000L;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static void stop(Thread thread) {
+        try {
+            thread.stop();
+        } catch (UnsupportedOperationException | SecurityException e) {
+            // Thread#stop is not supported by this JDK
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+}
@@ -0,0 +1,179 @@
+package edu.neu.ccs.prl.meringue;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Ring buffer backed by a memory-mapped file that is used to pass payloads from a single writing JVM to a single
+ * reading JVM. The writer places a payload in the buffer and then tells the reader the position and length of the
+ * payload through some other channel. The reader copies the payload out of the buffer and then records that the space
+ * used by the payload can be reused.
+ * <p>
+ * The position up to which the reader has consumed payloads is stored at the start of the file. If the writer
+ * observes a stale value of this position, it only underestimates the free space in the buffer. When there is not
+ * enough free space for a payload, {@link #write} fails and the payload needs to be sent through the other channel.
+ * <p>
+ * Positions increase monotonically; a position is mapped into the buffer by taking the remainder of the position
+ * divided by the capacity of the buffer.
+ * <p>
+ * Closing the buffer releases the mapping, so the buffer must not be used once it has been closed.
+ */
+public final class SharedRingBuffer implements Closeable {
+    /**
+     * Size of the header that stores the position up to which payloads have been consumed.
+     */
+    private static final int HEADER_SIZE = 64;
+    private final RandomAccessFile file;
+    /**
+     * Mapped contents of the file; declared as a {@link ByteBuffer} so that calls link against Java 8 signatures.
+     */
+    private final ByteBuffer buffer;
+    private final int capacity;
+    /**
+     * Position at which the next payload will be written; only used by the writer.
+     */
+    private long writePosition = 0;
+
+    /**
+     * Maps the specified file, creating or resizing it as necessary.
+     *
+     * @param file     the file to be mapped
+     * @param capacity the number of bytes available for payloads
+     * @throws IOException if an I/O error occurs mapping the file
+     */
+    public SharedRingBuffer(File file, int capacity) throws IOException {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        this.capacity = capacity;
+        this.file = new RandomAccessFile(file, "rw");
+        try {
+            this.file.setLength(HEADER_SIZE + (long) capacity);
+            this.buffer = this.file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity);
+        } catch (IOException e) {
+            this.file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Maps the specified existing file.
+     *
+     * @param file the file to be mapped
+     * @throws IOException if an I/O error occurs mapping the file
+     */
+    public SharedRingBuffer(File file) throws IOException {
+        this(file, (int) (file.length() - HEADER_SIZE));
+    }
+
+    /**
+     * Resets the buffer so that it is empty. Should only be called while no writer is using the buffer.
+     */
+    public void reset() {
+        buffer.putLong(0, 0);
+        writePosition = 0;
+    }
+
+    /**
+     * Places the specified payload into the buffer.
+     *
+     * @param payload the payload to be written
+     * @return the position at which the payload was written or {@code -1} if there was not enough free space
+     */
+    public long write(byte[] payload) {
+        long readPosition = buffer.getLong(0);
+        if (payload.length > capacity - (writePosition - readPosition)) {
+            return -1;
+        }
+        long position = writePosition;
+        copy(position, payload, true);
+        writePosition += payload.length;
+        return position;
+    }
+
+    /**
+     * Copies the payload at the specified position out of the buffer and marks the space used by the payload and any
+     * earlier payloads as free.
+     *
+     * @param position the position at which the payload was written
+     * @param length   the length of the payload
+     * @param reuse    an array that may be used to store the payload if it has the same length or {@code null}
+     * @return the payload
+     */
+    public byte[] read(long position, int length, byte[] reuse) {
+        if (position < 0 || length < 0 || length > capacity) {
+            throw new IllegalArgumentException("Invalid payload: " + position + ", " + length);
+        }
+        byte[] payload = reuse != null && reuse.length == length ? reuse : new byte[length];
+        copy(position, payload, false);
+        buffer.putLong(0, position + length);
+        return payload;
+    }
+
+    private void copy(long position, byte[] payload, boolean write) {
+        int start = (int) (position % capacity);
+        int first = Math.min(payload.length, capacity - start);
+        transfer(HEADER_SIZE + start, payload, 0, first, write);
+        // Wrap around to the start of the buffer
+        transfer(HEADER_SIZE, payload, first, payload.length - first, write);
+    }
+
+    private void transfer(int index, byte[] payload, int offset, int length, boolean write) {
+        if (length > 0) {
+            // Use a duplicate to avoid changing the position of the shared buffer
+            ByteBuffer view = buffer.duplicate();
+            ((Buffer) view).position(index);
+            if (write) {
+                view.put(payload, offset, length);
+            } else {
+                view.get(payload, offset, length);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            file.close();
+        } finally {
+            unmap(buffer);
+        }
+    }
+
+    /**
+     * Releases the mapping of the specified buffer. Otherwise, the mapping is only released once the buffer is garbage
+     * collected. There is no public API for this, so the mapping is released reflectively. If this fails, the mapping
+     * is left to the garbage collector.
+     */
+    private static void unmap(ByteBuffer buffer) {
+        try {
+            // Java 9+
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            invokeCleaner.invoke(field.get(null), buffer);
+        } catch (NoSuchMethodException e) {
+            // Java 8
+            try {
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            } catch (ReflectiveOperationException | RuntimeException e2) {
+                // The mapping will be released once the buffer is garbage collected
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // The mapping will be released once the buffer is garbage collected
+        }
+    }
+}
@@ -4,6 +4,11 @@ import java.io.File;
 
 public class SimpleReplayManager implements ReplayerManager {
     private final File input;
+    /**
+     * Recorder capturing a flight recording of the input if it is slow or {@code null} if the input should not be
+     * recorded.
+     */
+    private final SlowInputRecorder recorder = SlowInputRecorder.fromSystemProperties();
     private boolean hasNext = true;
 
     public SimpleReplayManager(File input) {
@@ -13,6 +18,9 @@ public class SimpleReplayManager implements ReplayerManager {
     @Override
     public File nextInput() {
         hasNext = false;
+        if (recorder != null) {
+            recorder.start(input);
+        }
         return input;
     }
 
@@ -23,6 +31,9 @@ public class SimpleReplayManager implements ReplayerManager {
 
     @Override
     public void handleResult(Throwable failure) {
+        if (recorder != null) {
+            recorder.finish();
+        }
         if (failure != null) {
             failure.printStackTrace();
         }
@@ -30,5 +41,8 @@ public class SimpleReplayManager implements ReplayerManager {
 
     @Override
     public void close() {
+        if (recorder != null) {
+            recorder.close();
+        }
     }
 }
@@ -0,0 +1,208 @@
+package edu.neu.ccs.prl.meringue;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Path;
+
+/**
+ * Captures a Java Flight Recorder recording of each input whose replay takes longer than a latency threshold. Once the
+ * replay of an input has taken longer than the threshold, a recording using the "profile" settings is started. The
+ * recording is written to a file named after the input when the replay of the input finishes or, if the replay never
+ * finishes, when this JVM exits normally or is terminated by a signal.
+ * <p>
+ * Recordings require the Flight Recorder API, which is available in Java 11+ and Java 8u262+. The API is accessed
+ * reflectively, so this class can be loaded by any Java 8+ JVM. If the API is not available, no recordings are
+ * captured. Recordings that cannot be started or written are skipped; the analyzing JVM detects that a recording is
+ * missing.
+ * <p>
+ * Thread-safe.
+ */
+public final class SlowInputRecorder implements Closeable {
+    /**
+     * Name of the system property that specifies the threshold in milliseconds.
+     */
+    public static final String THRESHOLD_KEY = "meringue.recording.threshold";
+    /**
+     * Name of the system property that specifies the directory to which recordings are written.
+     */
+    public static final String DIRECTORY_KEY = "meringue.recording.directory";
+    private final long threshold;
+    private final File directory;
+    /**
+     * Input currently being replayed or {@code null} if no input is being replayed.
+     */
+    private File inputFile;
+    /**
+     * Value of {@link System#nanoTime()} at which a recording should be started for the current input.
+     */
+    private long deadline;
+    /**
+     * Recording of the current input or {@code null} if no recording has been started for the current input.
+     */
+    private FlightRecording recording;
+    /**
+     * True if the Flight Recorder could not be used.
+     */
+    private boolean unavailable;
+    private boolean closed;
+
+    /**
+     * Creates and starts a recorder.
+     *
+     * @param threshold the amount of time in milliseconds that the replay of an input must take before it is recorded
+     * @param directory the directory to which recordings should be written
+     */
+    public SlowInputRecorder(long threshold, File directory) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Invalid threshold: " + threshold);
+        } else if (directory == null) {
+            throw new NullPointerException();
+        }
+        this.threshold = threshold;
+        this.directory = directory;
+        Thread thread = new Thread(this::run, "meringue-slow-input-recorder");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Creates a recorder configured by the system properties {@link #THRESHOLD_KEY} and {@link #DIRECTORY_KEY}.
+     *
+     * @return the created recorder or {@code null} if the system properties do not specify a recorder
+     */
+    public static SlowInputRecorder fromSystemProperties() {
+        String threshold = System.getProperty(THRESHOLD_KEY);
+        String directory = System.getProperty(DIRECTORY_KEY);
+        if (threshold == null || directory == null || Long.parseLong(threshold) < 0) {
+            return null;
+        }
+        return new SlowInputRecorder(Long.parseLong(threshold), new File(directory));
+    }
+
+    /**
+     * Starts measuring the replay of the specified input.
+     *
+     * @param inputFile the input that is about to be replayed
+     */
+    public synchronized void start(File inputFile) {
+        finish();
+        this.inputFile = inputFile;
+        this.deadline = System.nanoTime() + threshold * 1_000_000L;
+        notifyAll();
+    }
+
+    /**
+     * Stops measuring the replay of the current input and writes its recording if a recording was started.
+     */
+    public synchronized void finish() {
+        inputFile = null;
+        if (recording != null) {
+            recording.stop();
+            recording = null;
+        }
+    }
+
+    private void run() {
+        synchronized (this) {
+            while (!closed) {
+                long remaining = deadline - System.nanoTime();
+                try {
+                    if (inputFile == null || recording != null || unavailable) {
+                        wait();
+                    } else if (remaining > 0) {
+                        wait(remaining / 1_000_000L + 1);
+                    } else {
+                        recording = startRecording(getRecordingFile(directory, inputFile));
+                        if (recording == null) {
+                            // Do not retry for this input; wait for the next input to be started
+                            inputFile = null;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private FlightRecording startRecording(File file) {
+        try {
+            return new FlightRecording(file);
+        } catch (IOException | InvocationTargetException | RuntimeException e) {
+            // Skip this input
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // The Flight Recorder API is not available in this JVM
+            unavailable = true;
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized void close() {
+        finish();
+        closed = true;
+        notifyAll();
+    }
+
+    /**
+     * Returns the file to which the recording of the specified input is written.
+     *
+     * @param directory the directory to which recordings are written
+     * @param inputFile the input
+     * @return the file to which the recording of the specified input is written
+     */
+    public static File getRecordingFile(File directory, File inputFile) {
+        File parent = inputFile.getAbsoluteFile().getParentFile();
+        String prefix = parent == null ? "" : parent.getName() + "-";
+        return new File(directory, prefix + inputFile.getName() + ".jfr");
+    }
+
+    /**
+     * Wraps a {@code jdk.jfr.Recording} so that the Flight Recorder API is only loaded once a recording is started.
+     */
+    private static final class FlightRecording {
+        private final Object recording;
+
+        private FlightRecording(File file) throws IOException, ReflectiveOperationException {
+            if (!file.getParentFile().isDirectory() && !file.getParentFile().mkdirs()) {
+                throw new IOException("Failed to create directory: " + file.getParentFile());
+            }
+            Class<?> configurationClass = Class.forName("jdk.jfr.Configuration");
+            Class<?> recordingClass = Class.forName("jdk.jfr.Recording");
+            Object configuration = configurationClass.getMethod("getConfiguration", String.class)
+                                                     .invoke(null, "profile");
+            recording = recordingClass.getConstructor(configurationClass).newInstance(configuration);
+            try {
+                recordingClass.getMethod("setName", String.class).invoke(recording, "meringue-" + file.getName());
+                recordingClass.getMethod("setDestination", Path.class).invoke(recording, file.toPath());
+                // Write the recording if this JVM exits while the input is being replayed
+                recordingClass.getMethod("setDumpOnExit", boolean.class).invoke(recording, true);
+                recordingClass.getMethod("start").invoke(recording);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                close();
+                throw e;
+            }
+        }
+
+        private void stop() {
+            try {
+                // Writes the recording to its destination
+                recording.getClass().getMethod("stop").invoke(recording);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // The recording could not be written
+            } finally {
+                close();
+            }
+        }
+
+        private void close() {
+            try {
+                recording.getClass().getMethod("close").invoke(recording);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // The recording is discarded when this JVM exits
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package edu.neu.ccs.prl.meringue;
+
+import java.io.File;
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.Instrumentation;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Java agent that instruments classes so that their static state can be reset by the {@link StaticStateRegistry}.
+ * <p>
+ * The agent's argument is the path of an options file. The first line of the file is the class path of the
+ * transformer; each remaining line is the name of a class to be instrumented in the internal form used by the JVM.
+ * The transformer is loaded by a separate class loader so that its dependencies do not appear on the system class path
+ * and cannot conflict with the versions used by the classes being analyzed.
+ */
+public final class StaticResetAgent {
+    /**
+     * Name of the {@link ClassFileTransformer} class; the class must have a public constructor that takes the
+     * {@link Set} of the names of the classes to be instrumented.
+     */
+    public static final String TRANSFORMER_CLASS_NAME = "edu.neu.ccs.prl.meringue.StaticStateTransformer";
+
+    private StaticResetAgent() {
+        throw new AssertionError(
+                getClass().getSimpleName() + " is a static utility class and should not be instantiated");
+    }
+
+    public static void premain(String options, Instrumentation inst) throws Exception {
+        List<String> lines = Files.readAllLines(Paths.get(options), StandardCharsets.UTF_8);
+        String[] path = lines.get(0).split(File.pathSeparator);
+        URL[] urls = new URL[path.length];
+        for (int i = 0; i < path.length; i++) {
+            urls[i] = new File(path[i]).toURI().toURL();
+        }
+        Set<String> classNames = new HashSet<>(lines.subList(1, lines.size()));
+        // Delegate to the extension (or platform) class loader instead of the system class loader
+        ClassLoader loader = new URLClassLoader(urls, ClassLoader.getSystemClassLoader().getParent());
+        Class<?> clazz = Class.forName(TRANSFORMER_CLASS_NAME, true, loader);
+        inst.addTransformer((ClassFileTransformer) clazz.getConstructor(Set.class).newInstance(classNames));
+    }
+}
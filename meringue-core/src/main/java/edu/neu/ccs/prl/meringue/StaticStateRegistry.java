@@ -0,0 +1,143 @@
+package edu.neu.ccs.prl.meringue;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the classes whose static state can be reset and resets that state on request. Classes are instrumented by
+ * the {@link StaticResetAgent}: the original static initializer of an instrumented class is moved to a method named
+ * {@link #INITIALIZER_NAME}, static final fields that are not compile-time constants are made non-final, and the new
+ * static initializer calls the original one and then {@link #register}.
+ * <p>
+ * Resetting static state sets every non-final, non-synthetic static field of each registered class to its default
+ * value and then reruns the original static initializers in the order in which the classes finished initialization
+ * originally. This approximates the state of a freshly launched JVM in which the same classes have been initialized,
+ * but does not restore static state held by classes that are not instrumented.
+ * <p>
+ * Thread-safe.
+ */
+public final class StaticStateRegistry {
+    /**
+     * Name of the method to which the original static initializer of an instrumented class is moved.
+     */
+    public static final String INITIALIZER_NAME = "$$meringue$clinit";
+    /**
+     * Registered classes in the order in which they were registered.
+     */
+    private static final List<Class<?>> CLASSES = new ArrayList<>();
+    /**
+     * Resettable state of registered classes; an entry is created for a class the first time it is reset.
+     */
+    private static final List<ClassState> STATES = new ArrayList<>();
+
+    private StaticStateRegistry() {
+        throw new AssertionError(
+                getClass().getSimpleName() + " is a static utility class and should not be instantiated");
+    }
+
+    /**
+     * Called by the static initializer of an instrumented class after the original static initializer completes.
+     *
+     * @param clazz the class whose initialization completed
+     */
+    public static synchronized void register(Class<?> clazz) {
+        CLASSES.add(clazz);
+    }
+
+    /**
+     * Resets the static state of all registered classes. Classes first initialized by a rerun static initializer are
+     * registered, but are not reset until the next call.
+     */
+    public static void reset() {
+        List<ClassState> states;
+        synchronized (StaticStateRegistry.class) {
+            for (int i = STATES.size(); i < CLASSES.size(); i++) {
+                STATES.add(new ClassState(CLASSES.get(i)));
+            }
+            states = new ArrayList<>(STATES);
+        }
+        // Reset all fields before rerunning any initializer, as if the classes had just been loaded
+        for (ClassState state : states) {
+            state.clear();
+        }
+        for (ClassState state : states) {
+            state.initialize();
+        }
+    }
+
+    private static final class ClassState {
+        private final List<Field> fields = new ArrayList<>();
+        /**
+         * The original static initializer or {@code null} if the class had no static initializer.
+         */
+        private Method initializer;
+
+        private ClassState(Class<?> clazz) {
+            try {
+                for (Field field : clazz.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) && !Modifier.isFinal(modifiers) && !field.isSynthetic()) {
+                        field.setAccessible(true);
+                        fields.add(field);
+                    }
+                }
+                for (Method method : clazz.getDeclaredMethods()) {
+                    if (method.getName().equals(INITIALIZER_NAME) && method.getParameterCount() == 0) {
+                        method.setAccessible(true);
+                        initializer = method;
+                    }
+                }
+            } catch (RuntimeException | LinkageError e) {
+                // The state of the class cannot be accessed; leave it unchanged
+                fields.clear();
+                initializer = null;
+            }
+        }
+
+        private void clear() {
+            for (Field field : fields) {
+                try {
+                    field.set(null, getDefaultValue(field.getType()));
+                } catch (IllegalAccessException | RuntimeException e) {
+                    // Leave the field unchanged
+                }
+            }
+        }
+
+        private void initialize() {
+            if (initializer != null) {
+                try {
+                    initializer.invoke(null);
+                } catch (IllegalAccessException | InvocationTargetException | RuntimeException e) {
+                    // Unlike the first initialization, a failure does not make the class unusable
+                }
+            }
+        }
+
+        private static Object getDefaultValue(Class<?> type) {
+            if (!type.isPrimitive()) {
+                return null;
+            } else if (type == boolean.class) {
+                return false;
+            } else if (type == char.class) {
+                return (char) 0;
+            } else if (type == byte.class) {
+                return (byte) 0;
+            } else if (type == short.class) {
+                return (short) 0;
+            } else if (type == int.class) {
+                return 0;
+            } else if (type == long.class) {
+                return 0L;
+            } else if (type == float.class) {
+                return 0f;
+            } else {
+                return 0d;
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package edu.neu.ccs.prl.meringue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures the resources used by the current thread.
+ */
+public final class ThreadUsageUtil {
+    private static final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+
+    private ThreadUsageUtil() {
+        throw new AssertionError(getClass().getSimpleName() + " is a static utility class and should " +
+                                         "not be instantiated");
+    }
+
+    /**
+     * Returns the total CPU time used by the current thread.
+     *
+     * @return the total CPU time in nanoseconds used by the current thread or {@code -1} if CPU time cannot be
+     * measured
+     */
+    public static long getCpuTime() {
+        if (THREAD_BEAN.isCurrentThreadCpuTimeSupported() && THREAD_BEAN.isThreadCpuTimeEnabled()) {
+            return THREAD_BEAN.getCurrentThreadCpuTime();
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the total number of bytes allocated on the heap by the current thread. Only supported by JVMs that
+     * implement {@link com.sun.management.ThreadMXBean}.
+     *
+     * @return the total number of bytes allocated by the current thread or {@code -1} if allocations cannot be
+     * measured
+     */
+    public static long getAllocatedBytes() {
+        if (THREAD_BEAN instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) THREAD_BEAN;
+            if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+                return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the difference between two measurements.
+     *
+     * @param start the earlier measurement or {@code -1} if it is not known
+     * @param end   the later measurement or {@code -1} if it is not known
+     * @return the difference between the measurements or {@code -1} if either measurement is not known
+     */
+    public static long difference(long start, long end) {
+        return start < 0 || end < 0 ? -1 : end - start;
+    }
+}
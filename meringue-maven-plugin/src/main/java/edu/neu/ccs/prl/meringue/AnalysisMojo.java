@@ -4,6 +4,7 @@ import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.*;
 import org.apache.maven.shared.transfer.artifact.resolve.ArtifactResolver;
 
+import java.io.File;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -65,6 +66,126 @@ public class AnalysisMojo extends AbstractMeringueMojo implements AnalysisValues
      */
     @Parameter(property = "meringue.includeJavaClassLibrary", defaultValue = "false")
     private boolean includeJavaClassLibrary;
+    /**
+     * List of modules and packages of the Java Class Library to be included in coverage and JaCoCo reports if
+     * {@code includeJavaClassLibrary} is true. Each entry is either the name of a module (e.g., {@code java.base}) or
+     * the name of a module followed by a '/' and the name of a package in that module (e.g.,
+     * {@code java.base/java.util.regex}). Packages include their subpackages. By default, all modules are included.
+     */
+    @Parameter(property = "meringue.javaClassLibraryScope")
+    private List<String> javaClassLibraryScope = new LinkedList<>();
+    /**
+     * Directory used to persist the results of analyzing class files between analyses. Cached results are keyed by
+     * JaCoCo class id and can be shared by concurrent analyses. By default, {@code ${user.home}/.m2/meringue} is
+     * used.
+     */
+    @Parameter(property = "meringue.analysisCacheDirectory", defaultValue = "${user.home}/.m2/meringue")
+    private File analysisCacheDirectory;
+    /**
+     * Number of analysis JVMs used to replay inputs in parallel. Results are merged in the order of the inputs, so
+     * reports do not depend on the number of analysis JVMs. By default, a single analysis JVM is used.
+     */
+    @Parameter(property = "meringue.analysisForks", defaultValue = "1")
+    private int analysisForks;
+    /**
+     * Maximum number of inputs sent to an analysis JVM before the result of the first of those inputs is received.
+     * Keeping several inputs in flight avoids a round trip between JVMs for every input. By default, up to {@code 8}
+     * inputs are kept in flight.
+     */
+    @Parameter(property = "meringue.analysisPipelineDepth", defaultValue = "8")
+    private int analysisPipelineDepth;
+    /**
+     * True if coverage should be passed from analysis JVMs to this JVM through a ring buffer in a memory-mapped file.
+     * Only the location of the coverage in the buffer is sent over the socket connected to the analysis JVM. By
+     * default, coverage is sent over the socket.
+     */
+    @Parameter(property = "meringue.sharedMemoryTransport", defaultValue = "false")
+    private boolean sharedMemoryTransport;
+    /**
+     * Minimum amount of time in seconds between checkpoints of the analysis or {@code -1} if checkpoints should not be
+     * written. Checkpoints are written to the output directory and removed once the analysis completes. By default,
+     * a checkpoint is written at most every {@code 300} seconds.
+     */
+    @Parameter(property = "meringue.checkpointInterval", defaultValue = "300")
+    private long checkpointInterval;
+    /**
+     * True if the analysis should resume from the last checkpoint written to the output directory. The reports produced
+     * by a resumed analysis are identical to those produced by an uninterrupted analysis. If there is no checkpoint,
+     * the analysis starts from the beginning.
+     */
+    @Parameter(property = "meringue.resume", defaultValue = "false")
+    private boolean resume;
+    /**
+     * True if the results of replaying inputs should be cached in the output directory and reused by later analyses
+     * of inputs with the same contents on the same classpath. Inputs with identical contents are also only replayed
+     * once. By default, every input is replayed.
+     */
+    @Parameter(property = "meringue.resultCache", defaultValue = "false")
+    private boolean resultCache;
+    /**
+     * True if each analysis JVM should be paired with a standby analysis JVM that is launched in the background and
+     * takes over as soon as the active analysis JVM fails or times out. By default, a replacement analysis JVM is only
+     * launched once it is needed.
+     */
+    @Parameter(property = "meringue.analysisStandby", defaultValue = "false")
+    private boolean analysisStandby;
+    /**
+     * True if analysis JVMs should enforce the timeout themselves by interrupting and then stopping the thread replaying
+     * an input that exceeds the timeout. An analysis JVM is only replaced if the thread cannot be reclaimed. By default,
+     * an analysis JVM is replaced whenever an input exceeds the timeout.
+     */
+    @Parameter(property = "meringue.inForkTimeout", defaultValue = "false")
+    private boolean inForkTimeout;
+    /**
+     * Number of inputs after which an analysis JVM is replaced or -1 if analysis JVMs should not be replaced based on
+     * the number of inputs they replayed. By default, analysis JVMs are not replaced based on the number of inputs they
+     * replayed.
+     */
+    @Parameter(property = "meringue.analysisForkInputLimit", defaultValue = "-1")
+    private int analysisForkInputLimit;
+    /**
+     * Percentage of its maximum heap size that an analysis JVM may retain after a garbage collection before it is
+     * replaced or -1 if analysis JVMs should not be replaced based on their heap usage. By default, analysis JVMs are
+     * not replaced based on their heap usage.
+     */
+    @Parameter(property = "meringue.analysisForkHeapLimit", defaultValue = "-1")
+    private int analysisForkHeapLimit;
+    /**
+     * True if analysis JVMs should reset the static fields of classes included in coverage between inputs by rerunning
+     * their static initializers. By default, static state is carried over from one input to the next.
+     */
+    @Parameter(property = "meringue.resetStaticState", defaultValue = "false")
+    private boolean resetStaticState;
+    /**
+     * True if inputs should be replayed inside the Maven JVM instead of in forked analysis JVMs when the configuration
+     * allows it. If the replay of an input cannot be completed inside the Maven JVM, the remaining inputs are replayed
+     * in analysis JVMs. Only suitable for targets that do not exit the JVM or permanently corrupt its state. By
+     * default, inputs are replayed in analysis JVMs.
+     */
+    @Parameter(property = "meringue.inProcessAnalysis", defaultValue = "false")
+    private boolean inProcessAnalysis;
+    /**
+     * True if failure inputs of the campaign and inputs that previously caused an analysis JVM to fail should be
+     * replayed one at a time in a dedicated quarantine analysis JVM, so that the other analysis JVMs are not replaced
+     * because of them. Inputs are only known to have caused an analysis JVM to fail if results are cached. By default,
+     * all inputs are replayed in the same analysis JVMs.
+     */
+    @Parameter(property = "meringue.analysisQuarantine", defaultValue = "false")
+    private boolean analysisQuarantine;
+    /**
+     * Amount of time in milliseconds that the replay of an input must take before a Java Flight Recorder recording of
+     * the remainder of its replay is captured or -1 if inputs should not be recorded. Recordings are written to the
+     * directory "recordings" in the output directory. By default, inputs are not recorded.
+     */
+    @Parameter(property = "meringue.recordingThreshold", defaultValue = "-1")
+    private long recordingThreshold;
+    /**
+     * True if this goal should run the fuzzing campaign itself and replay each input saved by the campaign as soon as
+     * it has been written. The coverage and failure reports are updated while the campaign runs. Live analyses cannot
+     * be resumed. By default, the inputs of a campaign previously run by the fuzz goal are analyzed.
+     */
+    @Parameter(property = "meringue.liveAnalysis", defaultValue = "false")
+    private boolean liveAnalysis;
     @Component
     private ArtifactResolver artifactResolver;
 
@@ -122,4 +243,89 @@ public class AnalysisMojo extends AbstractMeringueMojo implements AnalysisValues
     public boolean includeJavaClassLibrary() {
         return includeJavaClassLibrary;
     }
+
+    @Override
+    public List<String> getJavaClassLibraryScope() {
+        return javaClassLibraryScope;
+    }
+
+    @Override
+    public int getAnalysisForks() {
+        return analysisForks;
+    }
+
+    @Override
+    public int getAnalysisPipelineDepth() {
+        return analysisPipelineDepth;
+    }
+
+    @Override
+    public boolean useSharedMemoryTransport() {
+        return sharedMemoryTransport;
+    }
+
+    @Override
+    public long getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    @Override
+    public boolean resumeAnalysis() {
+        return resume;
+    }
+
+    @Override
+    public boolean useResultCache() {
+        return resultCache;
+    }
+
+    @Override
+    public boolean useAnalysisStandby() {
+        return analysisStandby;
+    }
+
+    @Override
+    public boolean useInForkTimeout() {
+        return inForkTimeout;
+    }
+
+    @Override
+    public int getAnalysisForkInputLimit() {
+        return analysisForkInputLimit;
+    }
+
+    @Override
+    public int getAnalysisForkHeapLimit() {
+        return analysisForkHeapLimit;
+    }
+
+    @Override
+    public boolean resetStaticState() {
+        return resetStaticState;
+    }
+
+    @Override
+    public boolean useInProcessAnalysis() {
+        return inProcessAnalysis;
+    }
+
+    @Override
+    public boolean useAnalysisQuarantine() {
+        return analysisQuarantine;
+    }
+
+    @Override
+    public long getRecordingThreshold() {
+        return recordingThreshold;
+    }
+
+    @Override
+    public boolean useLiveAnalysis() {
+        return liveAnalysis;
+    }
+
+    @Override
+    public File getAnalysisCacheDirectory() {
+        return analysisCacheDirectory;
+    }
 }
\ No newline at end of file
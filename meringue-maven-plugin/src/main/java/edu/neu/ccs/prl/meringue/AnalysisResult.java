@@ -0,0 +1,215 @@
+package edu.neu.ccs.prl.meringue;
+
+import edu.neu.ccs.prl.meringue.report.IncidentReport;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.SessionInfoStore;
+
+import java.io.File;
+import java.time.Duration;
+
+/**
+ * Result of replaying a single input in an analysis JVM. The execution data of the result is decoded by the thread
+ * that received the result so that the thread recording results only needs to merge it.
+ * <p>
+ * Immutable.
+ */
+final class AnalysisResult {
+    private final File inputFile;
+    private final ExecutionDataStore executionData;
+    private final SessionInfoStore sessionInfos;
+    private final Failure failure;
+    private final String failureMessage;
+    private final IncidentReport.Type incident;
+    private final Duration executionTime;
+    /**
+     * CPU time used by the thread that replayed the input or {@code null} if it is not known.
+     */
+    private final Duration cpuTime;
+    /**
+     * Number of bytes allocated by the thread that replayed the input or {@code -1} if it is not known.
+     */
+    private final long allocatedBytes;
+    /**
+     * Exit value of the analysis JVM that failed while replaying the input or {@code null} if it is not known.
+     */
+    private final Integer exitValue;
+
+    /**
+     * @param inputFile      the input
+     * @param executionData  the decoded JaCoCo execution data collected while replaying the input
+     * @param sessionInfos   the JaCoCo session information for the execution data
+     * @param failure        the failure induced by the input or {@code null} if the input did not induce a failure
+     * @param failureMessage the message of the failure or {@code null} if there is no message
+     * @param executionTime  the time spent replaying the input
+     * @param cpuTime        the CPU time used by the thread that replayed the input or {@code null} if it is not known
+     * @param allocatedBytes the number of bytes allocated by the thread that replayed the input or {@code -1} if it is
+     *                       not known
+     */
+    AnalysisResult(File inputFile, ExecutionDataStore executionData, SessionInfoStore sessionInfos, Failure failure,
+                   String failureMessage, Duration executionTime, Duration cpuTime, long allocatedBytes) {
+        if (inputFile == null || executionData == null || sessionInfos == null || executionTime == null) {
+            throw new NullPointerException();
+        }
+        this.inputFile = inputFile;
+        this.executionData = executionData;
+        this.sessionInfos = sessionInfos;
+        this.failure = failure;
+        this.failureMessage = failureMessage;
+        this.incident = null;
+        this.executionTime = executionTime;
+        this.cpuTime = cpuTime;
+        this.allocatedBytes = allocatedBytes < 0 ? -1 : allocatedBytes;
+        this.exitValue = null;
+    }
+
+    AnalysisResult(File inputFile, IncidentReport.Type incident) {
+        this(inputFile, incident, null);
+    }
+
+    /**
+     * @param inputFile the input
+     * @param incident  the reason that the replay of the input did not complete
+     * @param exitValue the exit value of the analysis JVM that failed while replaying the input or {@code null} if it
+     *                  is not known
+     */
+    AnalysisResult(File inputFile, IncidentReport.Type incident, Integer exitValue) {
+        this(inputFile, incident, exitValue, null);
+    }
+
+    /**
+     * @param inputFile     the input
+     * @param incident      the reason that the replay of the input did not complete
+     * @param exitValue     the exit value of the analysis JVM that failed while replaying the input or {@code null} if
+     *                      it is not known
+     * @param executionTime the time spent replaying the input before it was stopped or {@code null} if it is not known
+     */
+    AnalysisResult(File inputFile, IncidentReport.Type incident, Integer exitValue, Duration executionTime) {
+        if (inputFile == null || incident == null) {
+            throw new NullPointerException();
+        }
+        this.inputFile = inputFile;
+        this.executionData = null;
+        this.sessionInfos = null;
+        this.failure = null;
+        this.failureMessage = null;
+        this.incident = incident;
+        this.executionTime = executionTime;
+        this.cpuTime = null;
+        this.allocatedBytes = -1;
+        this.exitValue = exitValue;
+    }
+
+    /**
+     * Creates a result for the specified input with the same outcome as the specified result. Used for inputs whose
+     * contents are identical to those of an input that was already replayed.
+     *
+     * @param inputFile the input
+     * @param result    the result of replaying an input with the same contents
+     */
+    AnalysisResult(File inputFile, AnalysisResult result) {
+        if (inputFile == null) {
+            throw new NullPointerException();
+        }
+        this.inputFile = inputFile;
+        this.executionData = result.executionData;
+        this.sessionInfos = result.sessionInfos;
+        this.failure = result.failure;
+        this.failureMessage = result.failureMessage;
+        this.incident = result.incident;
+        this.executionTime = result.executionTime;
+        this.cpuTime = result.cpuTime;
+        this.allocatedBytes = result.allocatedBytes;
+        this.exitValue = result.exitValue;
+    }
+
+    File getInputFile() {
+        return inputFile;
+    }
+
+    /**
+     * Returns the decoded JaCoCo execution data collected while replaying the input. The returned store must not be
+     * modified.
+     *
+     * @return the JaCoCo execution data collected while replaying the input or {@code null} if the replay did not
+     * complete
+     */
+    ExecutionDataStore getExecutionData() {
+        return executionData;
+    }
+
+    /**
+     * Returns the JaCoCo session information for the execution data collected while replaying the input.
+     *
+     * @return the JaCoCo session information or {@code null} if the replay did not complete
+     */
+    SessionInfoStore getSessionInfos() {
+        return sessionInfos;
+    }
+
+    /**
+     * Returns the failure induced by the input.
+     *
+     * @return the failure induced by the input or {@code null} if the input did not induce a failure
+     */
+    Failure getFailure() {
+        return failure;
+    }
+
+    String getFailureMessage() {
+        return failureMessage;
+    }
+
+    /**
+     * Returns the reason that the replay of the input did not complete.
+     *
+     * @return the reason that the replay of the input did not complete or {@code null} if the replay completed
+     */
+    IncidentReport.Type getIncident() {
+        return incident;
+    }
+
+    /**
+     * Returns the time spent by the analysis JVM replaying the input. For an input that timed out, this is the time
+     * spent replaying the input before the analysis JVM gave up on it.
+     *
+     * @return the time spent replaying the input or {@code null} if it is not known; always known if the replay
+     * completed
+     */
+    Duration getExecutionTime() {
+        return executionTime;
+    }
+
+    /**
+     * Returns the CPU time used by the thread that replayed the input.
+     *
+     * @return the CPU time used by the thread that replayed the input or {@code null} if the replay did not complete
+     * or the CPU time is not known
+     */
+    Duration getCpuTime() {
+        return cpuTime;
+    }
+
+    /**
+     * Returns the number of bytes allocated on the heap by the thread that replayed the input.
+     *
+     * @return the number of bytes allocated by the thread that replayed the input or {@code -1} if the replay did not
+     * complete or the number of bytes is not known
+     */
+    long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * Returns the exit value of the analysis JVM that failed while replaying the input.
+     *
+     * @return the exit value of the analysis JVM or {@code null} if the analysis JVM did not fail or its exit value is
+     * not known
+     */
+    Integer getExitValue() {
+        return exitValue;
+    }
+
+    boolean isCompleted() {
+        return incident == null;
+    }
+}
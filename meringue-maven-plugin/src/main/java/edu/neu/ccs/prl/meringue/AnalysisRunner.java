@@ -1,19 +1,48 @@
 package edu.neu.ccs.prl.meringue;
 
+import edu.neu.ccs.prl.meringue.report.AnalysisCheckpoint;
 import edu.neu.ccs.prl.meringue.report.CoverageReport;
 import edu.neu.ccs.prl.meringue.report.FailureReport;
+import edu.neu.ccs.prl.meringue.report.IncidentReport;
+import edu.neu.ccs.prl.meringue.report.SlowInputReport;
 import edu.neu.ccs.prl.meringue.report.SummaryReport;
 import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 
 public class AnalysisRunner {
+    /**
+     * Number of inputs listed as the slowest inputs in the slow input report.
+     */
+    private static final int SLOWEST_INPUTS = 20;
+    /**
+     * Amount of time in milliseconds past the recording threshold after which a replayed input is expected to have a
+     * flight recording. Allows for the delay between the threshold elapsing and the recording starting.
+     */
+    private static final long RECORDING_MARGIN_MILLIS = 1000;
+    /**
+     * Maximum amount of time in milliseconds that a live analysis waits for new inputs before checking whether the
+     * campaign has ended.
+     */
+    private static final long LIVE_POLL_MILLIS = 1000;
     private final AnalysisValues values;
 
     public AnalysisRunner(AnalysisValues values) {
@@ -25,10 +54,20 @@ public class AnalysisRunner {
 
     public void run() throws MojoExecutionException {
         try {
+            if (values.useLiveAnalysis() && values.resumeAnalysis()) {
+                throw new MojoExecutionException("A live analysis cannot be resumed from a checkpoint");
+            } else if (values.useLiveAnalysis()) {
+                // The campaign is run by this analysis, so the output of previous campaigns is discarded
+                clearOutputDirectory();
+            }
             values.initialize();
             CampaignConfiguration configuration = values.createCampaignConfiguration();
             FuzzFramework framework = values.createFrameworkBuilder().build(configuration);
-            values.getLog().info("Running analysis for: " + values.getTestDescription());
+            if (values.useLiveAnalysis()) {
+                values.getLog().info("Running fuzzing campaign with live analysis: " + values.getTestDescription());
+            } else {
+                values.getLog().info("Running analysis for: " + values.getTestDescription());
+            }
             run(framework, configuration);
         } catch (IOException | ReflectiveOperationException e) {
             throw new MojoExecutionException("Failed to analyze fuzzing campaign", e);
@@ -38,14 +77,34 @@ public class AnalysisRunner {
     private void run(FuzzFramework framework, CampaignConfiguration configuration)
             throws MojoExecutionException, IOException, ReflectiveOperationException {
         framework.startingAnalysis();
-        CoverageCalculator calculator = values.createCoverageCalculator();
-        JvmLauncher launcher =
-                values.createAnalysisLauncher(calculator.getFilter().getJacocoOption(), configuration, framework);
-        File[] inputFiles = collectInputFiles(framework);
-        long firstTimestamp = inputFiles.length == 0 ? 0 : inputFiles[0].lastModified();
-        CoverageReport coverageReport = new CoverageReport(calculator, firstTimestamp);
-        FailureReport failureReport = new FailureReport(firstTimestamp);
-        analyze(inputFiles, launcher, coverageReport, failureReport);
+        try (CoverageCalculator calculator = values.createCoverageCalculator()) {
+            JvmLauncher launcher =
+                    values.createAnalysisLauncher(calculator.getJacocoOption(), configuration, framework);
+            if (values.resetStaticState()) {
+                launcher = launcher.appendOptions(
+                        values.createStaticResetOption(calculator.getArtifactClassNames()));
+            }
+            if (values.useLiveAnalysis()) {
+                analyzeLive(configuration, framework, launcher, calculator);
+                return;
+            }
+            File[] inputFiles = collectInputFiles(framework);
+            long firstTimestamp = inputFiles.length == 0 ? 0 : inputFiles[0].lastModified();
+            CoverageReport coverageReport = new CoverageReport(calculator, firstTimestamp);
+            FailureReport failureReport = new FailureReport(firstTimestamp);
+            IncidentReport incidentReport = new IncidentReport(firstTimestamp);
+            SlowInputReport slowInputReport = new SlowInputReport(firstTimestamp, SLOWEST_INPUTS);
+            analyze(configuration, framework, inputFiles, launcher, calculator, coverageReport, failureReport,
+                    incidentReport, slowInputReport);
+            writeReports(configuration, framework, calculator, inputFiles.length, coverageReport, failureReport,
+                         incidentReport, slowInputReport);
+        }
+    }
+
+    private void writeReports(CampaignConfiguration configuration, FuzzFramework framework,
+                              CoverageCalculator calculator, int numberOfInputs, CoverageReport coverageReport,
+                              FailureReport failureReport, IncidentReport incidentReport,
+                              SlowInputReport slowInputReport) throws MojoExecutionException, IOException {
         SummaryReport summaryReport = new SummaryReport(
                 configuration,
                 framework.getClass().getName(),
@@ -55,37 +114,380 @@ public class AnalysisRunner {
                 coverageReport.getTotalBranches(),
                 coverageReport.getCoveredBranches(),
                 failureReport.getNumberOfUniqueFailures(),
-                inputFiles.length
+                numberOfInputs
         );
-        logResults(summaryReport);
+        logResults(summaryReport, incidentReport);
         writeSummaryReport(summaryReport);
         writeCoverageReport(coverageReport);
         writeFailureReport(failureReport);
+        writeIncidentReport(incidentReport);
+        writeSlowInputReport(slowInputReport);
         writeJacocoReports(configuration, coverageReport);
+        // The analysis completed, so the checkpoint is no longer needed
+        Files.deleteIfExists(getCheckpointFile().toPath());
     }
 
-    private void analyze(File[] inputFiles, JvmLauncher launcher, CoverageReport coverageReport,
-                         FailureReport failureReport) throws IOException, MojoExecutionException {
+    private void analyze(CampaignConfiguration configuration, FuzzFramework framework, File[] inputFiles,
+                         JvmLauncher launcher, CoverageCalculator calculator, CoverageReport coverageReport,
+                         FailureReport failureReport, IncidentReport incidentReport, SlowInputReport slowInputReport)
+            throws IOException, MojoExecutionException, ReflectiveOperationException {
         if (inputFiles.length == 0) {
             values.getLog().info("No input files were found for analysis");
             return;
         }
-        try (CampaignAnalyzer analyzer = new CampaignAnalyzer(launcher, coverageReport, failureReport,
-                                                              values.getTimeout())) {
-            for (int i = 0; i < inputFiles.length; i++) {
-                analyzer.analyze(inputFiles[i]);
-                if ((i + 1) % 100 == 1) {
-                    values.getLog().info(String.format("Analyzed %d/%d input files", i + 1, inputFiles.length));
+        File checkpointFile = getCheckpointFile();
+        int start = 0;
+        if (values.resumeAnalysis() && checkpointFile.isFile()) {
+            try {
+                start = AnalysisCheckpoint.restore(checkpointFile, inputFiles, coverageReport, failureReport,
+                                                   incidentReport, slowInputReport);
+            } catch (IOException e) {
+                throw new MojoExecutionException("Failed to resume analysis from checkpoint", e);
+            }
+            values.getLog().info(String.format("Resuming analysis after %d/%d input files", start,
+                                               inputFiles.length));
+        }
+        File[] remaining = Arrays.copyOfRange(inputFiles, start, inputFiles.length);
+        ResultCache cache = createResultCache(launcher, calculator);
+        AnalyzerOptions options = createAnalyzerOptions(cache);
+        File recordingDirectory = createRecordingDirectory(start > 0);
+        if (recordingDirectory != null) {
+            // Recording inputs does not change their results, so the options are not part of the fingerprint
+            launcher = launcher.appendOptions(values.createRecordingOptions().toArray(new String[0]));
+        }
+        InputHandler handler = new InputHandler(remaining, start, inputFiles, cache, checkpointFile, coverageReport,
+                                                failureReport, incidentReport, slowInputReport, recordingDirectory);
+        File[] replayedFiles = handler.getReplayedFiles();
+        boolean[] quarantined = new boolean[replayedFiles.length];
+        if (values.useAnalysisQuarantine()) {
+            quarantined = handler.predictCrashes(new HashSet<>(Arrays.asList(framework.getFailureFiles())));
+            values.getLog().info(String.format("Quarantined %d/%d input files", count(quarantined),
+                                               replayedFiles.length));
+        }
+        // Inputs that are expected to make the analysis JVM fail must not be replayed inside this JVM
+        int end = 0;
+        while (end < replayedFiles.length && !quarantined[end]) {
+            end++;
+        }
+        int analyzed = 0;
+        if (end > 0 && values.useInProcessAnalysis() && canAnalyzeInProcess(configuration, framework)) {
+            List<File> classPath = values.createAnalysisClassPath(configuration, framework);
+            String replayerClass = framework.getReplayerClass().getName();
+            SlowInputRecorder recorder = recordingDirectory == null ? null :
+                    new SlowInputRecorder(values.getRecordingThreshold(), recordingDirectory);
+            try (InProcessAnalyzer analyzer = new InProcessAnalyzer(classPath, calculator.getArtifactClassNames(),
+                                                                    configuration, replayerClass,
+                                                                    values.getMaxTraceSize(), values.getTimeout(),
+                                                                    values.isVerbose(), recorder)) {
+                analyzed = analyzer.analyze(Arrays.copyOf(replayedFiles, end), handler);
+            }
+            if (analyzed < end) {
+                values.getLog().warn(String.format("In-process analysis stopped after %d/%d input files; replaying"
+                                                           + " the remaining input files in analysis JVMs", analyzed,
+                                                   replayedFiles.length));
+            }
+        }
+        if (analyzed < replayedFiles.length) {
+            File[] remainingFiles = Arrays.copyOfRange(replayedFiles, analyzed, replayedFiles.length);
+            boolean[] remainingQuarantined = Arrays.copyOfRange(quarantined, analyzed, quarantined.length);
+            int offset = analyzed;
+            try (CampaignAnalyzerPool pool = createAnalyzerPool(launcher, options)) {
+                pool.analyze(remainingFiles, remainingQuarantined, (i, result) -> handler.handle(offset + i, result));
+            }
+        }
+        int reused = handler.finish();
+        if (cache != null) {
+            values.getLog().info(String.format("Reused results for %d/%d input files", reused, remaining.length));
+        }
+    }
+
+    /**
+     * Runs the fuzzing campaign and, while it runs, replays the inputs saved by the campaign as soon as they have been
+     * written. Inputs are replayed in batches by a single {@link CampaignAnalyzerPool}. The coverage and failure
+     * reports are rewritten after each batch, so they reflect the campaign so far. Once the campaign ends, only the
+     * inputs saved since the last batch remain to be replayed.
+     * <p>
+     * The batches follow the order in which inputs were noticed and include inputs that the campaign later deleted or
+     * replaced. So, once the campaign ends, the inputs that were analyzed are compared with the inputs that the
+     * campaign saved. If they differ, the final reports are rebuilt from the saved inputs in the order in which they
+     * were last modified, exactly like the reports of an analysis that is not live.
+     */
+    private void analyzeLive(CampaignConfiguration configuration, FuzzFramework framework, JvmLauncher launcher,
+                             CoverageCalculator calculator) throws IOException, MojoExecutionException {
+        if (values.useInProcessAnalysis()) {
+            values.getLog().info("Replaying input files in analysis JVMs because the analysis is live");
+        }
+        ResultCache cache = createResultCache(launcher, calculator);
+        AnalyzerOptions options = createAnalyzerOptions(cache);
+        File recordingDirectory = createRecordingDirectory(false);
+        if (recordingDirectory != null) {
+            launcher = launcher.appendOptions(values.createRecordingOptions().toArray(new String[0]));
+        }
+        CampaignRunner campaign = new CampaignRunner(values);
+        Duration duration = values.getDuration();
+        FutureTask<Void> task = new FutureTask<>(() -> {
+            campaign.run(framework, duration);
+            return null;
+        });
+        Thread thread = new Thread(task, "meringue-campaign");
+        thread.start();
+        CoverageReport coverageReport = null;
+        FailureReport failureReport = null;
+        IncidentReport incidentReport = null;
+        SlowInputReport slowInputReport = null;
+        int analyzed = 0;
+        int quarantined = 0;
+        int reused = 0;
+        // Inputs in the order in which they were analyzed and their modification times when they were analyzed
+        List<File> analyzedFiles = new ArrayList<>();
+        List<Long> analyzedTimestamps = new ArrayList<>();
+        try (CampaignAnalyzerPool pool = createAnalyzerPool(launcher, options)) {
+            campaign.awaitStart();
+            if (task.isDone()) {
+                // The campaign failed to start or ended immediately
+                checkCampaign(task);
+            }
+            try (InputWatcher watcher = new InputWatcher(framework, configuration.getOutputDirectory())) {
+                boolean finished = false;
+                while (!finished) {
+                    finished = task.isDone();
+                    // Once the campaign has ended, inputs are no longer being written
+                    File[] batch = finished ? watcher.collect() : watcher.await(LIVE_POLL_MILLIS);
+                    if (batch.length == 0) {
+                        continue;
+                    } else if (coverageReport == null) {
+                        long firstTimestamp = batch[0].lastModified();
+                        coverageReport = new CoverageReport(calculator, firstTimestamp);
+                        failureReport = new FailureReport(firstTimestamp);
+                        incidentReport = new IncidentReport(firstTimestamp);
+                        slowInputReport = new SlowInputReport(firstTimestamp, SLOWEST_INPUTS);
+                    }
+                    for (File file : batch) {
+                        analyzedFiles.add(file);
+                        analyzedTimestamps.add(file.lastModified());
+                    }
+                    InputHandler handler = new InputHandler(batch, analyzed, null, cache, null, coverageReport,
+                                                            failureReport, incidentReport, slowInputReport,
+                                                            recordingDirectory);
+                    boolean[] predicted = predictCrashes(framework, handler);
+                    pool.analyze(handler.getReplayedFiles(), predicted, handler);
+                    quarantined += count(predicted);
+                    reused += handler.finish();
+                    analyzed += batch.length;
+                    writeLiveReports(coverageReport, failureReport);
                 }
             }
+            File[] inputFiles = collectInputFiles(framework);
+            if (!matches(inputFiles, analyzedFiles, analyzedTimestamps)) {
+                values.getLog().info(String.format("Input files changed during the campaign; rebuilding the reports"
+                                                           + " from the %d saved input files", inputFiles.length));
+                long firstTimestamp = inputFiles.length == 0 ? 0 : inputFiles[0].lastModified();
+                coverageReport = new CoverageReport(calculator, firstTimestamp);
+                failureReport = new FailureReport(firstTimestamp);
+                incidentReport = new IncidentReport(firstTimestamp);
+                slowInputReport = new SlowInputReport(firstTimestamp, SLOWEST_INPUTS);
+                InputHandler handler = new InputHandler(inputFiles, 0, inputFiles, cache, null, coverageReport,
+                                                        failureReport, incidentReport, slowInputReport,
+                                                        recordingDirectory);
+                boolean[] predicted = predictCrashes(framework, handler);
+                pool.analyze(handler.getReplayedFiles(), predicted, handler);
+                quarantined = count(predicted);
+                reused = handler.finish();
+                analyzed = inputFiles.length;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the campaign to start");
+        } finally {
+            // Stops the campaign if the analysis failed
+            campaign.shutdown();
+            joinCampaign(thread);
+        }
+        checkCampaign(task);
+        if (analyzed == 0) {
+            values.getLog().info("No input files were found for analysis");
+            coverageReport = new CoverageReport(calculator, 0);
+            failureReport = new FailureReport(0);
+            incidentReport = new IncidentReport(0);
+            slowInputReport = new SlowInputReport(0, SLOWEST_INPUTS);
+        }
+        if (values.useAnalysisQuarantine()) {
+            values.getLog().info(String.format("Quarantined %d/%d input files", quarantined, analyzed));
+        }
+        if (cache != null) {
+            values.getLog().info(String.format("Reused results for %d/%d input files", reused, analyzed));
+        }
+        writeReports(configuration, framework, calculator, analyzed, coverageReport, failureReport, incidentReport,
+                     slowInputReport);
+    }
+
+    /**
+     * Waits for the campaign to end and throws an exception if the campaign failed.
+     */
+    private static void checkCampaign(FutureTask<Void> task) throws IOException, MojoExecutionException {
+        try {
+            task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the campaign to end");
+        } catch (ExecutionException e) {
+            throw new MojoExecutionException("Failed to execute fuzzing campaign", e.getCause());
+        }
+    }
+
+    private static void joinCampaign(Thread thread) {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Predicts which of the inputs that need to be replayed by the specified handler will cause the analysis JVM to
+     * fail.
+     *
+     * @return whether each input that needs to be replayed should be quarantined; all false if inputs are not
+     * quarantined
+     */
+    private boolean[] predictCrashes(FuzzFramework framework, InputHandler handler)
+            throws IOException, MojoExecutionException {
+        if (!values.useAnalysisQuarantine()) {
+            return new boolean[handler.getReplayedFiles().length];
+        }
+        return handler.predictCrashes(new HashSet<>(Arrays.asList(framework.getFailureFiles())));
+    }
+
+    /**
+     * Returns whether the specified inputs are the inputs that were analyzed, in the same order and unmodified since
+     * they were analyzed.
+     */
+    private static boolean matches(File[] inputFiles, List<File> analyzedFiles, List<Long> analyzedTimestamps) {
+        if (inputFiles.length != analyzedFiles.size()) {
+            return false;
+        }
+        for (int i = 0; i < inputFiles.length; i++) {
+            if (!inputFiles[i].equals(analyzedFiles.get(i))
+                    || inputFiles[i].lastModified() != analyzedTimestamps.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int count(boolean[] values) {
+        int count = 0;
+        for (boolean b : values) {
+            count += b ? 1 : 0;
+        }
+        return count;
+    }
+
+    /**
+     * Creates the cache used to persist results of replaying inputs.
+     *
+     * @return the created cache or {@code null} if results should not be cached
+     */
+    private ResultCache createResultCache(JvmLauncher launcher, CoverageCalculator calculator)
+            throws MojoExecutionException, IOException {
+        if (!values.useResultCache()) {
+            return null;
+        }
+        // Classes included in coverage are checked individually, so only cached results of inputs that executed
+        // a changed class are invalidated
+        Set<File> measured = calculator.getFilter().getIncludedArtifacts();
+        String fingerprint = ResultCache.computeFingerprint(launcher, measured, calculator.getFilter()::filter);
+        return new ResultCache(getResultCacheDirectory(), fingerprint, calculator::isIncludedClass);
+    }
+
+    private AnalyzerOptions createAnalyzerOptions(ResultCache cache) throws MojoExecutionException {
+        int forks = values.getAnalysisForks();
+        if (forks < 1) {
+            throw new MojoExecutionException("Invalid number of analysis forks: " + forks);
+        }
+        int depth = values.getAnalysisPipelineDepth();
+        if (depth < 1) {
+            throw new MojoExecutionException("Invalid analysis pipeline depth: " + depth);
+        }
+        int inputLimit = values.getAnalysisForkInputLimit();
+        if (inputLimit < -1 || inputLimit == 0) {
+            throw new MojoExecutionException("Invalid analysis fork input limit: " + inputLimit);
+        }
+        int heapLimit = values.getAnalysisForkHeapLimit();
+        if (heapLimit < -1 || heapLimit == 0 || heapLimit > 100) {
+            throw new MojoExecutionException("Invalid analysis fork heap limit: " + heapLimit);
+        }
+        return new AnalyzerOptions().withTimeout(values.getTimeout())
+                                    .withSharedMemory(values.useSharedMemoryTransport() ?
+                                                              values.getTemporaryDirectory() : null)
+                                    .withFullCoverage(cache != null)
+                                    .withStandby(values.useAnalysisStandby())
+                                    .withInForkTimeout(values.useInForkTimeout())
+                                    .withInputLimit(inputLimit)
+                                    .withHeapLimit(heapLimit);
+    }
+
+    private CampaignAnalyzerPool createAnalyzerPool(JvmLauncher launcher, AnalyzerOptions options)
+            throws MojoExecutionException, IOException {
+        return new CampaignAnalyzerPool(launcher, values.getAnalysisForks(), values.getAnalysisPipelineDepth(),
+                                        options, values.useAnalysisQuarantine());
+    }
+
+    /**
+     * Prepares the directory to which flight recordings of slow inputs are written.
+     *
+     * @param resumed true if the analysis resumed from a checkpoint
+     * @return the directory or {@code null} if inputs should not be recorded
+     */
+    private File createRecordingDirectory(boolean resumed) throws MojoExecutionException, IOException {
+        if (values.getRecordingThreshold() < 0) {
+            return null;
         }
+        File directory = values.getRecordingDirectory();
+        if (resumed) {
+            // Keep the recordings linked from the checkpoint
+            FileUtil.ensureDirectory(directory);
+        } else {
+            FileUtil.ensureEmptyDirectory(directory);
+        }
+        return directory;
+    }
+
+    /**
+     * Returns whether inputs can be replayed inside this JVM. Inputs can only be replayed inside this JVM if analysis
+     * JVMs would not need any options, environment, or working directory that differ from those of this JVM.
+     */
+    private boolean canAnalyzeInProcess(CampaignConfiguration configuration, FuzzFramework framework)
+            throws MojoExecutionException {
+        String reason = null;
+        if (!configuration.getJavaOptions().isEmpty() || !framework.getAnalysisJavaOptions().isEmpty()) {
+            reason = "Java options are specified for analysis JVMs";
+        } else if (configuration.getEnvironment() != null) {
+            reason = "an environment is specified for analysis JVMs";
+        } else if (configuration.getWorkingDirectory() != null &&
+                !configuration.getWorkingDirectory().getAbsoluteFile()
+                              .equals(new File(System.getProperty("user.dir")).getAbsoluteFile())) {
+            reason = "a working directory is specified for analysis JVMs";
+        } else if (values.includeJavaClassLibrary()) {
+            reason = "the Java Class Library is included in coverage";
+        } else if (values.resetStaticState()) {
+            reason = "static state is reset between inputs";
+        } else if (values.isDebug()) {
+            reason = "analysis JVMs should wait for a debugger";
+        }
+        if (reason != null) {
+            values.getLog().info("Replaying input files in analysis JVMs because " + reason);
+        }
+        return reason == null;
     }
 
-    private void logResults(SummaryReport report) throws MojoExecutionException {
+    private void logResults(SummaryReport report, IncidentReport incidentReport) throws MojoExecutionException {
         long covered = report.getNumberOfCoveredBranches();
         long total = report.getTotalBranches();
         values.getLog().info(String.format("Hit branches: %d/%d = %.7f", covered, total, (1.0 * covered) / total));
         values.getLog().info("Unique failures observed: " + report.getNumberOfUniqueFailures());
+        values.getLog().info("Timed out inputs: " + incidentReport.getNumberOfIncidents(IncidentReport.Type.TIMEOUT));
+        values.getLog().info("Analysis JVM failures: " + incidentReport.getNumberOfIncidents(IncidentReport.Type.CRASH));
     }
 
     private void writeJacocoReports(CampaignConfiguration configuration, CoverageReport report)
@@ -108,6 +510,72 @@ public class AnalysisRunner {
         report.write(file);
     }
 
+    private void writeIncidentReport(IncidentReport report) throws MojoExecutionException, IOException {
+        File file = new File(values.getOutputDirectory(), "incidents.json");
+        values.getLog().info("Writing incident report to: " + file);
+        report.write(file);
+    }
+
+    private void writeSlowInputReport(SlowInputReport report) throws MojoExecutionException, IOException {
+        File jsonFile = new File(values.getOutputDirectory(), "slow_inputs.json");
+        File csvFile = new File(values.getOutputDirectory(), "slow_inputs.csv");
+        values.getLog().info("Writing slow input reports to: " + jsonFile + " and " + csvFile);
+        report.writeJson(jsonFile);
+        report.writeCsv(csvFile);
+    }
+
+    /**
+     * Rewrites the coverage and failure reports during a live analysis. Each report is written to a temporary file that
+     * is then atomically moved into place, so a partially written report is never observed.
+     */
+    private void writeLiveReports(CoverageReport coverageReport, FailureReport failureReport)
+            throws MojoExecutionException, IOException {
+        writeAtomically(new File(values.getOutputDirectory(), "coverage.csv"), coverageReport::write);
+        writeAtomically(new File(values.getOutputDirectory(), "failures.json"), failureReport::write);
+    }
+
+    private static void writeAtomically(File file, ReportWriter writer) throws IOException {
+        File temp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+        try {
+            writer.write(temp);
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                       StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    /**
+     * Empties the output directory except for the result cache, whose entries remain valid for inputs with the same
+     * contents.
+     */
+    private void clearOutputDirectory() throws MojoExecutionException, IOException {
+        File directory = values.getOutputDirectory();
+        FileUtil.ensureDirectory(directory);
+        File cacheDirectory = getResultCacheDirectory();
+        File[] files = directory.listFiles();
+        if (files == null) {
+            throw new IOException("Failed to list files in: " + directory);
+        }
+        for (File file : files) {
+            if (file.equals(cacheDirectory)) {
+                continue;
+            } else if (file.isDirectory()) {
+                FileUtil.deleteDirectory(file);
+            } else {
+                FileUtil.delete(file);
+            }
+        }
+    }
+
+    private File getResultCacheDirectory() throws MojoExecutionException {
+        return new File(values.getOutputDirectory(), "result-cache");
+    }
+
+    private File getCheckpointFile() throws MojoExecutionException {
+        return new File(values.getOutputDirectory(), "checkpoint.json");
+    }
+
     private void writeSummaryReport(SummaryReport report) throws IOException, MojoExecutionException {
         File file = new File(values.getOutputDirectory(), "summary.json");
         values.getLog().info("Writing summary report to: " + file);
@@ -120,4 +588,255 @@ public class AnalysisRunner {
         files.sort(Comparator.comparingLong(File::lastModified));
         return files.toArray(new File[0]);
     }
+
+    private interface ReportWriter {
+        void write(File file) throws IOException;
+    }
+
+    /**
+     * Passes the results of the inputs to the reports in the order of the inputs. Only inputs that need to be replayed
+     * are passed to the {@link CampaignAnalyzerPool}. If a {@link ResultCache} is used, the results of inputs with a
+     * valid cache entry are read from the cache and inputs whose contents are identical to those of an earlier input
+     * reuse the result of that earlier input.
+     */
+    private final class InputHandler implements CampaignAnalyzerPool.ResultHandler {
+        private final File[] inputFiles;
+        /**
+         * Index of the first input of {@link #inputFiles} among all of the inputs of the analysis.
+         */
+        private final int offset;
+        /**
+         * All the inputs of the analysis or {@code null} if they are not known in advance. Checkpoints can only be
+         * written if all the inputs are known.
+         */
+        private final File[] allInputFiles;
+        private final ResultCache cache;
+        private final File checkpointFile;
+        private final CoverageReport coverageReport;
+        private final FailureReport failureReport;
+        private final IncidentReport incidentReport;
+        private final SlowInputReport slowInputReport;
+        /**
+         * Directory to which flight recordings of slow inputs are written or {@code null} if inputs are not recorded.
+         */
+        private final File recordingDirectory;
+        private final long recordingThreshold;
+        /**
+         * Indicates whether a missing flight recording has been reported.
+         */
+        private boolean missingRecordingReported;
+        /**
+         * Keys of the contents of the inputs or {@code null} if no cache is used.
+         */
+        private final String[] keys;
+        /**
+         * Index of the first input with the same contents as each input.
+         */
+        private final int[] originals;
+        /**
+         * Number of later inputs with the same contents as each input that have not yet been handled.
+         */
+        private final int[] duplicates;
+        /**
+         * Indicates whether the result for each input is read from the cache.
+         */
+        private final boolean[] cached;
+        /**
+         * Indices of the inputs that need to be replayed.
+         */
+        private final List<Integer> replayed = new ArrayList<>();
+        /**
+         * Results retained for inputs with later duplicates keyed by the index of the input.
+         */
+        private final Map<Integer, AnalysisResult> retained = new HashMap<>();
+        private final long interval;
+        private final Log log;
+        private long lastCheckpoint = System.nanoTime();
+        /**
+         * Index of the next input whose result should be handled.
+         */
+        private int next = 0;
+        private int reused = 0;
+
+        private InputHandler(File[] inputFiles, int offset, File[] allInputFiles, ResultCache cache,
+                             File checkpointFile, CoverageReport coverageReport, FailureReport failureReport,
+                             IncidentReport incidentReport, SlowInputReport slowInputReport,
+                             File recordingDirectory) throws IOException, MojoExecutionException {
+            this.inputFiles = inputFiles;
+            this.offset = offset;
+            this.allInputFiles = allInputFiles;
+            this.cache = cache;
+            this.checkpointFile = checkpointFile;
+            this.coverageReport = coverageReport;
+            this.failureReport = failureReport;
+            this.incidentReport = incidentReport;
+            this.slowInputReport = slowInputReport;
+            this.recordingDirectory = recordingDirectory;
+            this.recordingThreshold = values.getRecordingThreshold();
+            this.interval = checkpointFile == null ? -1 : values.getCheckpointInterval();
+            this.log = values.getLog();
+            this.keys = cache == null ? null : new String[inputFiles.length];
+            this.originals = new int[inputFiles.length];
+            this.duplicates = new int[inputFiles.length];
+            this.cached = new boolean[inputFiles.length];
+            Map<String, Integer> firsts = new HashMap<>();
+            for (int k = 0; k < inputFiles.length; k++) {
+                originals[k] = k;
+                if (cache != null) {
+                    keys[k] = ResultCache.computeKey(inputFiles[k]);
+                    Integer first = firsts.putIfAbsent(keys[k], k);
+                    if (first != null) {
+                        originals[k] = first;
+                        duplicates[first]++;
+                        continue;
+                    }
+                    cached[k] = cache.contains(keys[k]);
+                }
+                if (!cached[k]) {
+                    replayed.add(k);
+                }
+            }
+        }
+
+        File[] getReplayedFiles() {
+            return replayed.stream().map(k -> inputFiles[k]).toArray(File[]::new);
+        }
+
+        /**
+         * Predicts which of the inputs that need to be replayed will cause the analysis JVM to fail. Failure inputs of
+         * the campaign and, if a cache is used, inputs that previously caused an analysis JVM to fail are predicted to
+         * cause the analysis JVM to fail.
+         *
+         * @param failureFiles the failure inputs of the campaign
+         * @return whether each of the inputs returned by {@link #getReplayedFiles()} is predicted to cause the
+         * analysis JVM to fail
+         */
+        boolean[] predictCrashes(Set<File> failureFiles) {
+            boolean[] predicted = new boolean[replayed.size()];
+            for (int index = 0; index < predicted.length; index++) {
+                int k = replayed.get(index);
+                predicted[index] = failureFiles.contains(inputFiles[k]) ||
+                        (cache != null && cache.isKnownCrash(keys[k]));
+            }
+            return predicted;
+        }
+
+        @Override
+        public void handle(int index, AnalysisResult result) throws IOException {
+            int k = replayed.get(index);
+            handleKnownResults(k);
+            if (cache != null && result.isCompleted()) {
+                cache.put(keys[k], result);
+            } else if (cache != null && result.getIncident() == IncidentReport.Type.CRASH) {
+                cache.putCrash(keys[k]);
+            }
+            record(k, result);
+        }
+
+        /**
+         * Handles the results of the remaining inputs, none of which need to be replayed.
+         *
+         * @return the number of inputs whose results were reused instead of replaying them
+         */
+        int finish() throws IOException {
+            handleKnownResults(inputFiles.length);
+            return reused;
+        }
+
+        /**
+         * Handles the results of the inputs before the specified index that did not need to be replayed.
+         */
+        private void handleKnownResults(int end) throws IOException {
+            while (next < end) {
+                int k = next;
+                AnalysisResult result;
+                if (originals[k] != k) {
+                    AnalysisResult original = retained.get(originals[k]);
+                    if (--duplicates[originals[k]] == 0) {
+                        retained.remove(originals[k]);
+                    }
+                    // If the replay of the original timed out or failed, the duplicate is reported as the same incident
+                    result = new AnalysisResult(inputFiles[k], original);
+                } else {
+                    result = cache.get(keys[k], inputFiles[k]);
+                    if (result == null) {
+                        throw new IOException("Failed to read cached result for: " + inputFiles[k]);
+                    }
+                }
+                reused++;
+                record(k, result);
+            }
+        }
+
+        /**
+         * Returns the flight recording captured while replaying the specified input.
+         *
+         * @return the flight recording of the input or {@code null} if no recording was captured
+         */
+        private File findRecording(File inputFile) {
+            if (recordingDirectory == null) {
+                return null;
+            }
+            File recording = SlowInputRecorder.getRecordingFile(recordingDirectory, inputFile);
+            return recording.isFile() ? recording : null;
+        }
+
+        /**
+         * Warns once if an input replayed during this analysis exceeded the recording threshold, but no flight recording
+         * was captured; for example, because the Flight Recorder is not available in the analysis JVM.
+         */
+        private void checkRecording(int k, AnalysisResult result, File recording) {
+            if (recordingDirectory == null || recording != null || missingRecordingReported || cached[k] ||
+                    originals[k] != k) {
+                return;
+            }
+            if (result.getExecutionTime().toMillis() > recordingThreshold + RECORDING_MARGIN_MILLIS) {
+                missingRecordingReported = true;
+                log.warn(String.format("No flight recording was captured for slow input %s; the Java Flight "
+                                               + "Recorder may not be available in the analysis JVM",
+                                       result.getInputFile()));
+            }
+        }
+
+        private void record(int k, AnalysisResult result) throws IOException {
+            if (result.isCompleted()) {
+                failureReport.record(result.getInputFile(), result.getFailure(), result.getFailureMessage());
+                coverageReport.record(result.getInputFile(), result.getExecutionData(), result.getSessionInfos());
+                File recording = findRecording(result.getInputFile());
+                slowInputReport.record(result.getInputFile(), result.getExecutionTime().toNanos(),
+                                       result.getCpuTime() == null ? -1 : result.getCpuTime().toNanos(),
+                                       result.getAllocatedBytes(), recording);
+                checkRecording(k, result, recording);
+            } else {
+                incidentReport.record(result.getInputFile(), result.getIncident(), result.getExitValue());
+                if (result.getIncident() == IncidentReport.Type.TIMEOUT) {
+                    slowInputReport.recordTimeout(result.getInputFile(),
+                                                  result.getExecutionTime() == null ? -1 :
+                                                          result.getExecutionTime().toNanos(),
+                                                  findRecording(result.getInputFile()));
+                    log.warn("Timed out: " + result.getInputFile());
+                } else if (result.getExitValue() != null) {
+                    log.warn(String.format("Analysis JVM failed with exit value %d: %s", result.getExitValue(),
+                                           result.getInputFile()));
+                } else {
+                    log.warn("Analysis JVM failed: " + result.getInputFile());
+                }
+            }
+            if (duplicates[k] > 0) {
+                retained.put(k, result);
+            }
+            next = k + 1;
+            int i = k + offset;
+            if ((i + 1) % 100 == 1 && allInputFiles == null) {
+                log.info(String.format("Analyzed %d input files", i + 1));
+            } else if ((i + 1) % 100 == 1) {
+                log.info(String.format("Analyzed %d/%d input files", i + 1, allInputFiles.length));
+            }
+            if (interval >= 0 && System.nanoTime() - lastCheckpoint >= TimeUnit.SECONDS.toNanos(interval)) {
+                AnalysisCheckpoint.write(checkpointFile, allInputFiles, i + 1, coverageReport, failureReport,
+                                         incidentReport, slowInputReport);
+                lastCheckpoint = System.nanoTime();
+            }
+        }
+    }
 }
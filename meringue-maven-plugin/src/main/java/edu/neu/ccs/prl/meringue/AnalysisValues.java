@@ -4,13 +4,20 @@ import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.shared.transfer.artifact.resolve.ArtifactResolver;
 import org.jacoco.agent.rt.internal_aeaf9ab.PreMain;
 import org.jacoco.core.analysis.Analyzer;
+import org.objectweb.asm.ClassVisitor;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -72,7 +79,7 @@ public interface AnalysisValues extends CampaignValues {
     default CoverageCalculator createCoverageCalculator() throws MojoExecutionException {
         try {
             return new CoverageFilter(this)
-                    .createCoverageCalculator(getTemporaryDirectory());
+                    .createCoverageCalculator(getTemporaryDirectory(), getAnalysisCacheDirectory());
         } catch (IOException e) {
             throw new MojoExecutionException("Failed to create coverage calculator", e);
         }
@@ -87,6 +94,160 @@ public interface AnalysisValues extends CampaignValues {
         return false;
     }
 
+    /**
+     * Directory used to persist the results of analyzing class files between analyses or {@code null} if the results
+     * should not be persisted.
+     *
+     * @return directory used to persist the results of analyzing class files or {@code null}
+     */
+    default File getAnalysisCacheDirectory() throws MojoExecutionException {
+        return null;
+    }
+
+    /**
+     * Modules and packages of the Java Class Library to be included in coverage and JaCoCo reports if
+     * {@link #includeJavaClassLibrary()} is true. Each entry is either the name of a module (e.g., {@code java.base})
+     * or the name of a module followed by a '/' and the name of a package in that module (e.g.,
+     * {@code java.base/java.util.regex}). Packages include their subpackages. If empty, all modules are included.
+     *
+     * @return modules and packages of the Java Class Library to be included in coverage and JaCoCo reports
+     */
+    default List<String> getJavaClassLibraryScope() throws MojoExecutionException {
+        return new LinkedList<>();
+    }
+
+    /**
+     * Number of analysis JVMs used to replay inputs in parallel.
+     *
+     * @return number of analysis JVMs used to replay inputs in parallel
+     */
+    default int getAnalysisForks() throws MojoExecutionException {
+        return 1;
+    }
+
+    /**
+     * Maximum number of inputs in flight for each analysis JVM.
+     *
+     * @return maximum number of inputs sent to an analysis JVM before the result of the first is received
+     */
+    default int getAnalysisPipelineDepth() throws MojoExecutionException {
+        return 8;
+    }
+
+    /**
+     * True if coverage should be passed from analysis JVMs through memory-mapped files instead of sockets.
+     *
+     * @return true if coverage should be passed from analysis JVMs through memory-mapped files
+     */
+    default boolean useSharedMemoryTransport() throws MojoExecutionException {
+        return false;
+    }
+
+    /**
+     * Returns the minimum amount of time in seconds between checkpoints of the analysis or {@code -1} if checkpoints
+     * should not be written.
+     *
+     * @return the minimum amount of time in seconds between checkpoints of the analysis
+     */
+    default long getCheckpointInterval() throws MojoExecutionException {
+        return 300;
+    }
+
+    /**
+     * True if the analysis should resume from the last checkpoint written to the output directory.
+     *
+     * @return true if the analysis should resume from the last checkpoint
+     */
+    default boolean resumeAnalysis() throws MojoExecutionException {
+        return false;
+    }
+
+    /**
+     * True if results of replaying inputs should be cached and reused for inputs with the same contents.
+     *
+     * @return true if results of replaying inputs should be cached and reused
+     */
+    default boolean useResultCache() throws MojoExecutionException {
+        return false;
+    }
+
+    /**
+     * True if a standby analysis JVM should be kept ready to replace each analysis JVM.
+     *
+     * @return true if a standby analysis JVM should be kept ready to replace each analysis JVM
+     */
+    default boolean useAnalysisStandby() throws MojoExecutionException {
+        return false;
+    }
+
+    /**
+     * True if analysis JVMs should enforce the timeout themselves instead of being replaced when the timeout elapses.
+     *
+     * @return true if analysis JVMs should enforce the timeout themselves
+     */
+    default boolean useInForkTimeout() throws MojoExecutionException {
+        return false;
+    }
+
+    /**
+     * Returns the number of inputs after which an analysis JVM is replaced or {@code -1} if analysis JVMs should not be
+     * replaced based on the number of inputs they replayed.
+     *
+     * @return the number of inputs after which an analysis JVM is replaced
+     */
+    default int getAnalysisForkInputLimit() throws MojoExecutionException {
+        return -1;
+    }
+
+    /**
+     * Returns the percentage of its maximum heap size that an analysis JVM may retain after a garbage collection before
+     * it is replaced or {@code -1} if analysis JVMs should not be replaced based on their heap usage.
+     *
+     * @return the percentage of its maximum heap size that an analysis JVM may retain before it is replaced
+     */
+    default int getAnalysisForkHeapLimit() throws MojoExecutionException {
+        return -1;
+    }
+
+    /**
+     * True if analysis JVMs should reset the static state of classes included in coverage between inputs.
+     *
+     * @return true if analysis JVMs should reset the static state of classes included in coverage between inputs
+     */
+    default boolean resetStaticState() throws MojoExecutionException {
+        return false;
+    }
+
+    /**
+     * True if inputs should be replayed inside the analyzing JVM when possible instead of in forked analysis JVMs.
+     *
+     * @return true if inputs should be replayed inside the analyzing JVM when possible
+     */
+    default boolean useInProcessAnalysis() throws MojoExecutionException {
+        return false;
+    }
+
+    /**
+     * True if inputs that are expected to cause the analysis JVM to fail should be replayed in a dedicated analysis JVM.
+     * Failure inputs of the campaign and, if results are cached, inputs that previously caused an analysis JVM to fail
+     * are expected to cause the analysis JVM to fail.
+     *
+     * @return true if inputs that are expected to cause the analysis JVM to fail should be quarantined
+     */
+    default boolean useAnalysisQuarantine() throws MojoExecutionException {
+        return false;
+    }
+
+    /**
+     * True if the analysis should run the fuzzing campaign itself and replay the inputs saved by the campaign while it
+     * runs instead of after it has ended.
+     *
+     * @return true if inputs should be replayed while the campaign runs
+     */
+    default boolean useLiveAnalysis() throws MojoExecutionException {
+        return false;
+    }
+
     default void analyze() throws MojoExecutionException {
         new AnalysisRunner(this).run();
     }
@@ -103,11 +264,8 @@ public interface AnalysisValues extends CampaignValues {
             options.add(JvmLauncher.DEBUG_OPT + "5005");
         }
         options.add("-cp");
-        options.add(CampaignUtil.buildClassPath(
-                createAnalysisJar(),
-                configuration.getTestClasspathJar(),
-                createAnalysisFrameworkJar(framework)
-        ));
+        List<File> classPath = createAnalysisClassPath(configuration, framework);
+        options.add(CampaignUtil.buildClassPath(classPath.toArray(new File[0])));
         options.add(jacocoOption);
         options.addAll(framework.getAnalysisJavaOptions());
         String[] arguments = new String[]{
@@ -127,6 +285,20 @@ public interface AnalysisValues extends CampaignValues {
         );
     }
 
+    /**
+     * Creates the class path used to replay inputs during analysis.
+     *
+     * @param configuration the configuration of the campaign
+     * @param framework     the framework used for the campaign
+     * @return the class path used to replay inputs during analysis
+     * @throws MojoExecutionException if a manifest JAR for the class path could not be created
+     */
+    default List<File> createAnalysisClassPath(CampaignConfiguration configuration, FuzzFramework framework)
+            throws MojoExecutionException {
+        return Arrays.asList(createAnalysisJar(), configuration.getTestClasspathJar(),
+                             createAnalysisFrameworkJar(framework));
+    }
+
     default File createAnalysisJar() throws MojoExecutionException {
         try {
             File jar = new File(getTemporaryDirectory(), "meringue-analysis.jar");
@@ -140,6 +312,35 @@ public interface AnalysisValues extends CampaignValues {
         }
     }
 
+    /**
+     * Creates the Java agent option used to reset the static state of the specified classes between inputs in analysis
+     * JVMs.
+     *
+     * @param classNames the names of the classes whose static state should be reset in the internal form used by the
+     *                   JVM
+     * @return the Java agent option for analysis JVMs
+     * @throws MojoExecutionException if the agent JAR or its options file could not be created
+     * @see StaticResetAgent
+     */
+    default String createStaticResetOption(Collection<String> classNames) throws MojoExecutionException {
+        try {
+            File jar = new File(getTemporaryDirectory(), "meringue-static-reset.jar");
+            FileUtil.buildManifestJar(Collections.singleton(FileUtil.getClassPathElement(StaticResetAgent.class)), jar,
+                                      Collections.singletonMap("Premain-Class", StaticResetAgent.class.getName()));
+            File options = new File(getTemporaryDirectory(), "meringue-static-reset.txt");
+            List<String> lines = new ArrayList<>();
+            lines.add(Stream.of(StaticStateTransformer.class, ClassVisitor.class)
+                            .map(FileUtil::getClassPathElement)
+                            .map(File::getAbsolutePath)
+                            .collect(Collectors.joining(File.pathSeparator)));
+            lines.addAll(new TreeSet<>(classNames));
+            Files.write(options.toPath(), lines, StandardCharsets.UTF_8);
+            return String.format("-javaagent:%s=%s", jar.getAbsolutePath(), options.getAbsolutePath());
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to create static state reset agent", e);
+        }
+    }
+
     default File createAnalysisFrameworkJar(FuzzFramework framework) throws MojoExecutionException {
         try {
             File jar = new File(getTemporaryDirectory(), "meringue-analysis-framework.jar");
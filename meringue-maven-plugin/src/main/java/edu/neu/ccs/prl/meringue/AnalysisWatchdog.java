@@ -0,0 +1,114 @@
+package edu.neu.ccs.prl.meringue;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enforces deadlines for a fixed set of {@link Alarm Alarms} using a single long-lived thread. Arming and disarming
+ * an alarm does not allocate, so an alarm can be used for every input replayed by an analyzer.
+ * <p>
+ * Thread-safe.
+ */
+final class AnalysisWatchdog implements Closeable {
+    private final List<Alarm> alarms = new ArrayList<>();
+    private final Thread thread;
+    private boolean closed = false;
+
+    AnalysisWatchdog() {
+        this.thread = new Thread(this::run, "meringue-analysis-watchdog");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Creates a new disarmed alarm that runs the specified action when it fires. The action is run on the watchdog's
+     * thread while holding the watchdog's lock, so it must not block. Once {@link Alarm#disarm()} returns, the action
+     * is guaranteed to not be running and to not run until the alarm is armed again.
+     *
+     * @param action the action to run when the alarm fires
+     * @return the created alarm
+     */
+    synchronized Alarm register(Runnable action) {
+        if (action == null) {
+            throw new NullPointerException();
+        }
+        Alarm alarm = new Alarm(action);
+        alarms.add(alarm);
+        return alarm;
+    }
+
+    private synchronized void run() {
+        while (!closed) {
+            long now = System.nanoTime();
+            long wait = Long.MAX_VALUE;
+            for (Alarm alarm : alarms) {
+                if (alarm.armed) {
+                    if (alarm.deadline - now <= 0) {
+                        alarm.armed = false;
+                        alarm.fired = true;
+                        alarm.action.run();
+                    } else {
+                        wait = Math.min(wait, alarm.deadline - now);
+                    }
+                }
+            }
+            try {
+                if (wait == Long.MAX_VALUE) {
+                    wait();
+                } else {
+                    TimeUnit.NANOSECONDS.timedWait(this, wait);
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    final class Alarm {
+        private final Runnable action;
+        private boolean armed = false;
+        private boolean fired = false;
+        private long deadline;
+
+        private Alarm(Runnable action) {
+            this.action = action;
+        }
+
+        /**
+         * Arms this alarm to fire once the specified amount of time has elapsed.
+         *
+         * @param timeout the amount of time after which this alarm should fire
+         * @param unit    the unit of the timeout argument
+         */
+        void arm(long timeout, TimeUnit unit) {
+            synchronized (AnalysisWatchdog.this) {
+                deadline = System.nanoTime() + unit.toNanos(timeout);
+                armed = true;
+                fired = false;
+                AnalysisWatchdog.this.notifyAll();
+            }
+        }
+
+        /**
+         * Disarms this alarm.
+         *
+         * @return true if this alarm fired since it was last armed
+         */
+        boolean disarm() {
+            synchronized (AnalysisWatchdog.this) {
+                armed = false;
+                boolean result = fired;
+                fired = false;
+                return result;
+            }
+        }
+    }
+}
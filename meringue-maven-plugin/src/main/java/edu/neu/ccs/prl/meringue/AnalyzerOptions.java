@@ -0,0 +1,155 @@
+package edu.neu.ccs.prl.meringue;
+
+import java.io.File;
+
+/**
+ * Options controlling how {@link CampaignAnalyzer CampaignAnalyzers} manage and communicate with their analysis JVMs.
+ * <p>
+ * Immutable.
+ */
+final class AnalyzerOptions {
+    private final long timeout;
+    /**
+     * Directory in which files backing shared ring buffers are created or {@code null} if coverage should only be
+     * received over the connection.
+     */
+    private final File sharedMemoryDirectory;
+    private final boolean fullCoverage;
+    private final boolean standby;
+    private final boolean inForkTimeout;
+    private final int inputLimit;
+    private final int heapLimit;
+
+    AnalyzerOptions() {
+        this(-1, null, false, false, false, -1, -1);
+    }
+
+    private AnalyzerOptions(long timeout, File sharedMemoryDirectory, boolean fullCoverage, boolean standby,
+                            boolean inForkTimeout, int inputLimit, int heapLimit) {
+        if (timeout < -1) {
+            throw new IllegalArgumentException("Invalid timeout: " + timeout);
+        } else if (inputLimit < -1 || inputLimit == 0) {
+            throw new IllegalArgumentException("Invalid input limit: " + inputLimit);
+        } else if (heapLimit < -1 || heapLimit == 0 || heapLimit > 100) {
+            throw new IllegalArgumentException("Invalid heap limit: " + heapLimit);
+        }
+        this.timeout = timeout;
+        this.sharedMemoryDirectory = sharedMemoryDirectory;
+        this.fullCoverage = fullCoverage;
+        this.standby = standby;
+        this.inForkTimeout = inForkTimeout;
+        this.inputLimit = inputLimit;
+        this.heapLimit = heapLimit;
+    }
+
+    /**
+     * Returns the maximum amount of time in seconds to replay a single input.
+     *
+     * @return the maximum amount of time in seconds to replay a single input or {@code -1} if there is no timeout
+     */
+    long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Returns whether coverage should be received through a ring buffer in a memory-mapped file.
+     *
+     * @return true if coverage should be received through a ring buffer in a memory-mapped file
+     */
+    boolean useSharedMemory() {
+        return sharedMemoryDirectory != null;
+    }
+
+    /**
+     * Returns the directory in which files backing shared ring buffers are created.
+     *
+     * @return the directory in which files backing shared ring buffers are created or {@code null} if coverage should
+     * only be received over the connection
+     */
+    File getSharedMemoryDirectory() {
+        return sharedMemoryDirectory;
+    }
+
+    /**
+     * Returns whether results should include all probes covered by their input instead of only the probes not
+     * covered by inputs previously replayed in the same analysis JVM.
+     *
+     * @return true if results should include all probes covered by their input
+     */
+    boolean useFullCoverage() {
+        return fullCoverage;
+    }
+
+    /**
+     * Returns whether a standby analysis JVM should be kept ready.
+     *
+     * @return true if a standby analysis JVM should be kept ready
+     */
+    boolean useStandby() {
+        return standby;
+    }
+
+    /**
+     * Returns whether analysis JVMs should enforce the timeout themselves.
+     *
+     * @return true if analysis JVMs should enforce the timeout themselves
+     */
+    boolean useInForkTimeout() {
+        return inForkTimeout && timeout >= 0;
+    }
+
+    /**
+     * Returns the number of inputs after which an analysis JVM is retired.
+     *
+     * @return the number of inputs after which an analysis JVM is retired or {@code -1} if there is no limit
+     */
+    int getInputLimit() {
+        return inputLimit;
+    }
+
+    /**
+     * Returns the percentage of its maximum heap size that an analysis JVM may retain after a garbage collection
+     * before it is retired.
+     *
+     * @return the percentage of the maximum heap size at which an analysis JVM is retired or {@code -1} if there is
+     * no limit
+     */
+    int getHeapLimit() {
+        return heapLimit;
+    }
+
+    AnalyzerOptions withTimeout(long timeout) {
+        return new AnalyzerOptions(timeout, sharedMemoryDirectory, fullCoverage, standby, inForkTimeout, inputLimit,
+                                   heapLimit);
+    }
+
+    AnalyzerOptions withSharedMemory(File sharedMemoryDirectory) {
+        return new AnalyzerOptions(timeout, sharedMemoryDirectory, fullCoverage, standby, inForkTimeout, inputLimit,
+                                   heapLimit);
+    }
+
+    AnalyzerOptions withFullCoverage(boolean fullCoverage) {
+        return new AnalyzerOptions(timeout, sharedMemoryDirectory, fullCoverage, standby, inForkTimeout, inputLimit,
+                                   heapLimit);
+    }
+
+    AnalyzerOptions withStandby(boolean standby) {
+        return new AnalyzerOptions(timeout, sharedMemoryDirectory, fullCoverage, standby, inForkTimeout, inputLimit,
+                                   heapLimit);
+    }
+
+    AnalyzerOptions withInForkTimeout(boolean inForkTimeout) {
+        return new AnalyzerOptions(timeout, sharedMemoryDirectory, fullCoverage, standby, inForkTimeout, inputLimit,
+                                   heapLimit);
+    }
+
+    AnalyzerOptions withInputLimit(int inputLimit) {
+        return new AnalyzerOptions(timeout, sharedMemoryDirectory, fullCoverage, standby, inForkTimeout, inputLimit,
+                                   heapLimit);
+    }
+
+    AnalyzerOptions withHeapLimit(int heapLimit) {
+        return new AnalyzerOptions(timeout, sharedMemoryDirectory, fullCoverage, standby, inForkTimeout, inputLimit,
+                                   heapLimit);
+    }
+}
@@ -1,118 +1,482 @@
 package edu.neu.ccs.prl.meringue;
 
-import edu.neu.ccs.prl.meringue.report.CoverageReport;
-import edu.neu.ccs.prl.meringue.report.FailureReport;
+import edu.neu.ccs.prl.meringue.report.IncidentReport;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.SessionInfoStore;
 
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.ServerSocket;
+import java.nio.file.Files;
 import java.time.Duration;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Replays inputs in an analysis JVM. Several inputs can be in flight at once; the analysis JVM replays them in order and
+ * streams back their results tagged with sequence numbers.
+ * <p>
+ * Optionally, a standby analysis JVM is launched in the background and kept connected but idle. When the active
+ * analysis JVM needs to be replaced, the standby analysis JVM is promoted and a new standby analysis JVM is launched.
+ * Analysis JVMs configure their replayer before connecting, so a promoted analysis JVM can start replaying inputs
+ * immediately.
+ * <p>
+ * An analysis JVM can be retired after replaying a fixed number of inputs or once the heap it retains after garbage
+ * collection exceeds a percentage of its maximum heap size. A retiring analysis JVM is not sent any more inputs; once
+ * the results for the inputs already sent to it have been received, it is shut down and replaced.
+ */
 final class CampaignAnalyzer implements Closeable {
+    /**
+     * Number of bytes available for coverage in a shared ring buffer.
+     */
+    private static final int RING_BUFFER_CAPACITY = 16 * 1024 * 1024;
+    /**
+     * Additional time in milliseconds allowed for an analysis JVM that enforces the timeout itself to report a timeout.
+     */
+    private static final long BACKSTOP_MARGIN_MILLIS = 5000;
+    /**
+     * Maximum amount of time in milliseconds to wait for a failed analysis JVM to exit.
+     */
+    private static final long EXIT_WAIT_MILLIS = 1000;
     private final JvmLauncher launcher;
-    private final CoverageReport coverageReport;
-    private final long timeout;
+    private final AnalyzerOptions options;
     private final ServerSocket server;
-    private final FailureReport failureReport;
-    private ForkConnection connection;
+    /**
+     * Alarm used to enforce the timeout or {@code null} if there is no timeout.
+     */
+    private final AnalysisWatchdog.Alarm alarm;
+    /**
+     * File backing {@link #ringBuffer} or {@code null} if coverage is only received over the connection.
+     */
+    private final File ringBufferFile;
+    /**
+     * Buffer shared with the analysis JVM used to receive coverage or {@code null} if coverage is only received over
+     * the connection.
+     */
+    private final SharedRingBuffer ringBuffer;
+    /**
+     * Connection to the analysis JVM. Only written by the thread using this analyzer, but read by the watchdog
+     * thread when the timeout elapses.
+     */
+    private volatile ForkConnection connection;
     private Process process;
+    /**
+     * Requests that have been sent to the analysis JVM but whose results have not been received in the order in
+     * which they were submitted.
+     */
+    private final Deque<Request> awaiting = new ArrayDeque<>();
+    /**
+     * Requests that have been submitted but not yet sent to the analysis JVM in the order in which they were
+     * submitted.
+     */
+    private final Deque<Request> queued = new ArrayDeque<>();
+    /**
+     * Number of upcoming requests that must be replayed one at a time.
+     */
+    private int serial = 0;
+    private int nextSequenceNumber = 0;
+    /**
+     * Buffer reused to receive execution data; the execution data is decoded before the next result is received.
+     */
+    private byte[] buffer;
+    /**
+     * Number of requests sent to the current analysis JVM.
+     */
+    private int sent = 0;
+    /**
+     * True if the current analysis JVM should not be sent any more requests.
+     */
+    private boolean retiring = false;
+    /**
+     * Launch of the standby analysis JVM or {@code null} if no standby analysis JVM has been launched.
+     */
+    private FutureTask<Fork> nextFork;
 
-    CampaignAnalyzer(JvmLauncher launcher, CoverageReport coverageReport, FailureReport failureReport, long timeout)
-            throws IOException {
-        if (timeout < -1) {
-            throw new IllegalArgumentException();
-        }
-        if (launcher == null || coverageReport == null || failureReport == null) {
+    CampaignAnalyzer(JvmLauncher launcher, AnalysisWatchdog watchdog, AnalyzerOptions options) throws IOException {
+        if (launcher == null || options == null || (options.getTimeout() >= 0 && watchdog == null)) {
             throw new NullPointerException();
         }
-        this.coverageReport = coverageReport;
-        this.failureReport = failureReport;
-        this.timeout = timeout;
+        this.options = options;
+        this.alarm = options.getTimeout() < 0 ? null : watchdog.register(this::abort);
         // Create a server socket bound to an automatically allocated port
         this.server = new ServerSocket(0);
-        this.launcher = launcher.appendArguments(String.valueOf(server.getLocalPort()));
+        String port = String.valueOf(server.getLocalPort());
+        long forkTimeout = options.useInForkTimeout() ? TimeUnit.SECONDS.toMillis(options.getTimeout()) : -1;
+        if (options.useSharedMemory()) {
+            this.ringBufferFile = File.createTempFile("meringue-coverage-", ".bin",
+                                                       options.getSharedMemoryDirectory());
+            try {
+                this.ringBuffer = new SharedRingBuffer(ringBufferFile, RING_BUFFER_CAPACITY);
+            } catch (IOException e) {
+                server.close();
+                Files.deleteIfExists(ringBufferFile.toPath());
+                throw e;
+            }
+            this.launcher = launcher.appendArguments(port, String.valueOf(forkTimeout),
+                                                     ringBufferFile.getAbsolutePath());
+        } else {
+            this.ringBufferFile = null;
+            this.ringBuffer = null;
+            this.launcher = launcher.appendArguments(port, String.valueOf(forkTimeout));
+        }
     }
 
+    /**
+     * Closes the connection to the analysis JVM and, if there are inputs in flight, launches a new analysis JVM and
+     * resends those inputs.
+     */
     private void restartConnection() throws IOException {
         closeConnection();
-        // Launch the analysis JVM
-        this.process = launcher.launch();
-        // Connection to the JVM
-        this.connection = new ForkConnection(server.accept());
+        // Requests sent to the old analysis JVM need to be sent again
+        while (!awaiting.isEmpty()) {
+            queued.addFirst(awaiting.removeLast());
+        }
+        if (queued.isEmpty()) {
+            // Launch the analysis JVM when an input is next submitted
+            return;
+        }
+        Fork fork = takeStandby();
+        if (fork == null) {
+            fork = launchFork();
+        }
+        if (options.useStandby()) {
+            launchStandby();
+        }
+        if (ringBuffer != null) {
+            // The previous analysis JVM has stopped, so nothing in the buffer will be read
+            // The new analysis JVM has not written to the buffer yet
+            ringBuffer.reset();
+        }
+        this.process = fork.process;
+        this.connection = fork.connection;
+        this.sent = 0;
+        this.retiring = false;
+        sendQueued();
+    }
+
+    /**
+     * Launches an analysis JVM and waits for it to connect. Analysis JVMs are launched one at a time, so that each
+     * accepted connection belongs to the analysis JVM that was just launched.
+     */
+    private synchronized Fork launchFork() throws IOException {
+        Process launched = launcher.launch();
+        try {
+            return new Fork(launched, new ForkConnection(server.accept()));
+        } catch (IOException e) {
+            stopProcess(launched);
+            throw e;
+        }
+    }
+
+    private void launchStandby() {
+        nextFork = new FutureTask<>(this::launchFork);
+        Thread thread = new Thread(nextFork, "meringue-analysis-standby");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Waits for the standby analysis JVM to connect. A standby analysis JVM that stopped while it was idle is
+     * discarded.
+     *
+     * @return the standby analysis JVM or {@code null} if there is no standby analysis JVM, it failed to launch, or it
+     * has stopped
+     */
+    private Fork takeStandby() throws InterruptedIOException {
+        FutureTask<Fork> task = nextFork;
+        nextFork = null;
+        if (task == null) {
+            return null;
+        }
+        Fork fork;
+        try {
+            fork = task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for standby analysis JVM");
+        } catch (ExecutionException e) {
+            // Launch the analysis JVM in the foreground instead
+            return null;
+        }
+        if (!fork.process.isAlive() || fork.connection.isClosed()) {
+            // Otherwise, the next input would be reported as having caused the analysis JVM to fail
+            fork.connection.close();
+            stopProcess(fork.process);
+            return null;
+        }
+        return fork;
     }
 
     private boolean isConnected() {
         return connection != null && !connection.isClosed();
     }
 
-    void analyze(File inputFile) throws IOException {
-        if (!isConnected()) {
+    /**
+     * Sends the specified input to the analysis JVM to be replayed after all previously submitted inputs. The result
+     * for the input can be obtained by calling {@link #receive} once the results for all previously submitted inputs
+     * have been received.
+     *
+     * @param inputFile the input to be replayed
+     * @throws IOException if an I/O error occurs launching the analysis JVM
+     */
+    void submit(File inputFile) throws IOException {
+        queued.add(new Request(nextSequenceNumber++, inputFile));
+        if (connection == null) {
             restartConnection();
+        } else {
+            sendQueued();
         }
-        Timer timer = timeout < 0 ? null : startInterrupter(inputFile);
-        try {
-            connection.send(inputFile);
-            byte[] execData = connection.receive(byte[].class);
-            Failure failure = null;
-            String failureMessage = null;
-            if (connection.receive(Boolean.class)) {
-                failure = connection.receive(Failure.class);
-                failureMessage = connection.receive(String.class);
+    }
+
+    /**
+     * Waits for the result of the least recently submitted input that is in flight.
+     * If the analysis JVM fails or the timeout elapses while that input is being replayed, the input is reported as
+     * an incident, the analysis JVM is restarted, and the remaining inputs in flight are resubmitted.
+     *
+     * @return the result of replaying the least recently submitted input that is in flight
+     * @throws IOException           if an I/O error occurs launching the analysis JVM
+     * @throws IllegalStateException if no inputs are in flight
+     */
+    AnalysisResult receive() throws IOException {
+        if (awaiting.isEmpty() && queued.isEmpty()) {
+            throw new IllegalStateException();
+        }
+        while (true) {
+            if (!isConnected()) {
+                restartConnection();
             }
-            if (timer != null) {
-                timer.cancel();
+            Request request = awaiting.peek();
+            if (alarm != null) {
+                // Give an analysis JVM enforcing the timeout itself enough time to reclaim or abandon the input
+                long backstop = options.useInForkTimeout() ?
+                        3 * ReplayWatchdog.GRACE_PERIOD_MILLIS + BACKSTOP_MARGIN_MILLIS : 0;
+                alarm.arm(TimeUnit.SECONDS.toMillis(options.getTimeout()) + backstop, TimeUnit.MILLISECONDS);
             }
-            failureReport.record(inputFile, failure, failureMessage);
-            coverageReport.record(inputFile, execData);
-        } catch (Throwable t) {
-            // Input caused fork to fail
+            AnalysisResult result;
+            try {
+                if (connection.readInt() != request.sequenceNumber) {
+                    throw new IOException("Unexpected result from analysis JVM for: " + request.inputFile);
+                }
+                long elapsed = connection.readLong();
+                if (connection.readBoolean()) {
+                    // The analysis JVM timed out the input
+                    boolean exiting = connection.readBoolean();
+                    disarm();
+                    if (exiting) {
+                        // The thread replaying the input could not be reclaimed
+                        closeConnection();
+                    }
+                    result = new AnalysisResult(request.inputFile, IncidentReport.Type.TIMEOUT, null,
+                                                Duration.ofNanos(elapsed));
+                } else {
+                    result = readResult(request, elapsed);
+                }
+            } catch (Throwable t) {
+                // Input caused fork to fail or the timeout elapsed
+                boolean timedOut = disarm();
+                if (!timedOut && awaiting.size() > 1) {
+                    // When an analysis JVM dies with unread inputs, its connection may be reset discarding results
+                    // that were already sent. So, the failure cannot be attributed to the least recent input.
+                    // Replay the inputs that were in flight one at a time to determine which input caused the failure.
+                    serial = awaiting.size();
+                    restartConnection();
+                    continue;
+                }
+                if (timedOut) {
+                    result = new AnalysisResult(request.inputFile, IncidentReport.Type.TIMEOUT);
+                } else {
+                    result = new AnalysisResult(request.inputFile, IncidentReport.Type.CRASH, awaitExitValue());
+                }
+                closeConnection();
+            }
+            return complete(result);
+        }
+    }
+
+    /**
+     * Reads the resource usage, coverage, and failure of a completed replay from the analysis JVM.
+     */
+    private AnalysisResult readResult(Request request, long elapsed) throws IOException {
+        long cpuTime = connection.readLong();
+        long allocatedBytes = connection.readLong();
+        if (connection.readBoolean()) {
+            // Coverage was placed in the shared ring buffer
+            long position = connection.readLong();
+            int length = connection.readInt();
+            if (ringBuffer == null) {
+                throw new IOException("Unexpected shared memory coverage from analysis JVM");
+            }
+            buffer = ringBuffer.read(position, length, buffer);
+        } else {
+            buffer = connection.readBytes(buffer);
+        }
+        Failure failure = null;
+        String failureMessage = null;
+        if (connection.readBoolean()) {
+            failure = connection.readFailure();
+            failureMessage = connection.readString();
+        }
+        long retainedHeap = connection.readLong();
+        long maxHeap = connection.readLong();
+        if (options.getHeapLimit() > 0 && maxHeap > 0 && retainedHeap * 100 > options.getHeapLimit() * maxHeap) {
+            retiring = true;
+        }
+        // If the alarm fired after the result was received, the connection will be restarted
+        disarm();
+        ExecutionDataStore store = new ExecutionDataStore();
+        SessionInfoStore sessions = new SessionInfoStore();
+        CoverageAccumulator.read(buffer, store, sessions);
+        return new AnalysisResult(request.inputFile, store, sessions, failure, failureMessage,
+                                  Duration.ofNanos(elapsed), cpuTime < 0 ? null : Duration.ofNanos(cpuTime),
+                                  allocatedBytes);
+    }
+
+    /**
+     * Removes the least recently submitted input that is in flight and sends more requests to the analysis JVM.
+     */
+    private AnalysisResult complete(AnalysisResult result) throws IOException {
+        awaiting.remove();
+        if (serial > 0) {
+            serial--;
+        }
+        if (isConnected() && awaiting.isEmpty() && !canSend()) {
+            // Retire the analysis JVM
             closeConnection();
+        }
+        if (isConnected()) {
+            sendQueued();
+        } else {
+            // Resubmit the inputs that were in flight behind the input
             restartConnection();
-        } finally {
-            if (timer != null) {
-                timer.cancel();
+        }
+        return result;
+    }
+
+    /**
+     * Sends queued requests to the analysis JVM. If requests are being replayed one at a time, then a request is only
+     * sent if no other request is awaiting a result.
+     */
+    private void sendQueued() {
+        while (!queued.isEmpty() && (serial == 0 || awaiting.isEmpty()) && canSend()) {
+            Request request = queued.remove();
+            awaiting.add(request);
+            sent++;
+            try {
+                connection.writeInt(request.sequenceNumber);
+                connection.writeFile(request.inputFile);
+                connection.writeBoolean(options.useFullCoverage());
+                connection.flush();
+            } catch (IOException e) {
+                // The analysis JVM failed; results that were already sent may still be received
             }
         }
     }
 
-    private Timer startInterrupter(File inputFile) {
-        Timer timer = new Timer();
-        timer.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                closeConnection();
-                System.out.println("Timed out: " + inputFile);
+    /**
+     * Returns whether more requests can be sent to the current analysis JVM.
+     */
+    private boolean canSend() {
+        return !retiring && (options.getInputLimit() < 0 || sent < options.getInputLimit());
+    }
+
+    /**
+     * Waits briefly for the failed analysis JVM to exit.
+     *
+     * @return the exit value of the analysis JVM or {@code null} if it did not exit
+     */
+    private Integer awaitExitValue() {
+        try {
+            if (process != null && process.waitFor(EXIT_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                return process.exitValue();
             }
-        }, Duration.ofSeconds(timeout).toMillis());
-        return timer;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    private boolean disarm() {
+        return alarm != null && alarm.disarm();
+    }
+
+    /**
+     * Closes the connection to the analysis JVM unblocking the thread waiting for the result of the current input.
+     * Called by the watchdog thread when the timeout elapses.
+     */
+    private void abort() {
+        ForkConnection current = connection;
+        if (current != null) {
+            current.close();
+        }
     }
 
     private void closeConnection() {
         if (connection != null && !connection.isClosed()) {
             try {
-                connection.send(null);
+                // Signal the analysis JVM to stop
+                connection.writeInt(-1);
+                connection.flush();
             } catch (IOException e) {
                 // Failed to send shutdown signal
             }
             connection.close();
-            connection = null;
         }
-        if (process != null && process.isAlive()) {
+        connection = null;
+        if (process != null) {
+            stopProcess(process);
+        }
+        process = null;
+    }
+
+    private static void stopProcess(Process process) {
+        if (process.isAlive()) {
             try {
                 ProcessUtil.stop(process);
             } catch (InterruptedException e) {
                 //
             }
-            process = null;
         }
     }
 
     @Override
     public void close() throws IOException {
+        // Closing the server unblocks the launch of the standby analysis JVM if it has not connected yet
         server.close();
         closeConnection();
+        Fork fork = takeStandby();
+        if (fork != null) {
+            this.process = fork.process;
+            this.connection = fork.connection;
+            closeConnection();
+        }
+        if (ringBuffer != null) {
+            ringBuffer.close();
+            Files.deleteIfExists(ringBufferFile.toPath());
+        }
+    }
+
+    private static final class Fork {
+        private final Process process;
+        private final ForkConnection connection;
+
+        private Fork(Process process, ForkConnection connection) {
+            this.process = process;
+            this.connection = connection;
+        }
+    }
+
+    private static final class Request {
+        private final int sequenceNumber;
+        private final File inputFile;
+
+        private Request(int sequenceNumber, File inputFile) {
+            this.sequenceNumber = sequenceNumber;
+            this.inputFile = inputFile;
+        }
     }
 }
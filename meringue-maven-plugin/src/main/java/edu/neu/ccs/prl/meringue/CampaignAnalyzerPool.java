@@ -0,0 +1,317 @@
+package edu.neu.ccs.prl.meringue;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Replays inputs across a pool of {@link CampaignAnalyzer CampaignAnalyzers}, each with its own analysis JVM. Inputs
+ * are handed out to the analyzers as they become available, but results are passed to the {@link ResultHandler} on
+ * the calling thread in the order of the inputs. Therefore, the handler observes the same sequence of results
+ * regardless of the size of the pool. Each analyzer is driven by a worker thread that feeds inputs to its analysis JVM
+ * and receives and decodes their results, so replaying inputs overlaps with handling results on the calling thread.
+ * <p>
+ * Each analyzer keeps up to {@link #depth} inputs in flight. To bound the number of results held in memory,
+ * analyzers do not start replaying an input until all results for inputs more than {@link #window} positions earlier
+ * have been handled.
+ * <p>
+ * Optionally, the pool also has a quarantine analyzer with its own analysis JVM. Inputs that are expected to cause the
+ * analysis JVM to fail are only replayed by the quarantine analyzer, one at a time, so that the analysis JVMs of the
+ * other analyzers are not replaced because of them. All other inputs are only replayed by the other analyzers.
+ */
+final class CampaignAnalyzerPool implements Closeable {
+    private final List<CampaignAnalyzer> analyzers = new ArrayList<>();
+    /**
+     * Analyzer used to replay quarantined inputs or {@code null} if quarantined inputs are replayed like other inputs.
+     */
+    private final CampaignAnalyzer quarantine;
+    /**
+     * Watchdog shared by the analyzers to enforce the timeout or {@code null} if there is no timeout.
+     */
+    private final AnalysisWatchdog watchdog;
+    /**
+     * Maximum number of inputs in flight for each analyzer.
+     */
+    private final int depth;
+    /**
+     * Maximum number of results that can be pending at once.
+     */
+    private final int window;
+    /**
+     * Results for pending inputs; the result for input {@code i} is stored at index {@code i % window}.
+     */
+    private final AnalysisResult[] results;
+    /**
+     * Indicates whether the result for the input at the corresponding index of {@link #results} is available.
+     */
+    private final boolean[] available;
+    /**
+     * Index of the next input that could be handed out to an analyzer other than the quarantine analyzer.
+     */
+    private int next;
+    /**
+     * Index of the next input that could be handed out to the quarantine analyzer.
+     */
+    private int nextQuarantined;
+    /**
+     * Index of the next input whose result should be passed to the handler.
+     */
+    private int handled;
+    /**
+     * Exception thrown by an analyzer or {@code null} if no exception has been thrown.
+     */
+    private IOException error;
+    private boolean stopped;
+
+    /**
+     * @param launcher   the launcher used to create analysis JVMs
+     * @param size       the number of analyzers, not including the quarantine analyzer
+     * @param depth      the maximum number of inputs in flight for each analyzer other than the quarantine analyzer
+     * @param options    the options of the analyzers
+     * @param quarantine true if quarantined inputs should be replayed by a dedicated analyzer
+     * @throws IOException if an I/O error occurs creating an analyzer
+     */
+    CampaignAnalyzerPool(JvmLauncher launcher, int size, int depth, AnalyzerOptions options, boolean quarantine)
+            throws IOException {
+        if (size < 1) {
+            throw new IllegalArgumentException("Invalid pool size: " + size);
+        } else if (depth < 1) {
+            throw new IllegalArgumentException("Invalid pipeline depth: " + depth);
+        }
+        this.watchdog = options.getTimeout() < 0 ? null : new AnalysisWatchdog();
+        CampaignAnalyzer quarantineAnalyzer = null;
+        try {
+            for (int i = 0; i < size; i++) {
+                analyzers.add(new CampaignAnalyzer(launcher, watchdog, options));
+            }
+            if (quarantine) {
+                // A standby is not worth an additional analysis JVM for the few inputs that are quarantined
+                quarantineAnalyzer = new CampaignAnalyzer(launcher, watchdog, options.withStandby(false));
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+        this.quarantine = quarantineAnalyzer;
+        this.depth = depth;
+        this.window = (depth + 3) * size;
+        this.results = new AnalysisResult[window];
+        this.available = new boolean[window];
+    }
+
+    /**
+     * Replays the specified inputs and passes their results to the specified handler in the order of the inputs.
+     *
+     * @param inputFiles the inputs to be replayed
+     * @param handler    the handler to which results should be passed
+     * @throws IOException if an I/O error occurs replaying an input or the handler throws an exception
+     */
+    void analyze(File[] inputFiles, ResultHandler handler) throws IOException {
+        analyze(inputFiles, new boolean[inputFiles.length], handler);
+    }
+
+    /**
+     * Replays the specified inputs and passes their results to the specified handler in the order of the inputs.
+     * If this pool has a quarantine analyzer, then the quarantined inputs are replayed by that analyzer.
+     *
+     * @param inputFiles  the inputs to be replayed
+     * @param quarantined indicates whether each of the inputs is quarantined
+     * @param handler     the handler to which results should be passed
+     * @throws IOException if an I/O error occurs replaying an input or the handler throws an exception
+     */
+    void analyze(File[] inputFiles, boolean[] quarantined, ResultHandler handler) throws IOException {
+        if (quarantined.length != inputFiles.length) {
+            throw new IllegalArgumentException();
+        }
+        // Without a quarantine analyzer, every input is replayed by the other analyzers
+        boolean[] routes = quarantine == null ? new boolean[inputFiles.length] : quarantined;
+        synchronized (this) {
+            next = 0;
+            nextQuarantined = 0;
+            handled = 0;
+            error = null;
+            stopped = false;
+        }
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < analyzers.size(); i++) {
+            CampaignAnalyzer analyzer = analyzers.get(i);
+            Thread worker = new Thread(() -> work(analyzer, depth, false, inputFiles, routes),
+                                       "meringue-analysis-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+        if (quarantine != null) {
+            Thread worker = new Thread(() -> work(quarantine, 1, true, inputFiles, routes),
+                                       "meringue-analysis-quarantine");
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+        try {
+            for (int i = 0; i < inputFiles.length; i++) {
+                handler.handle(i, take(i));
+            }
+        } finally {
+            stop();
+            for (Thread worker : workers) {
+                try {
+                    worker.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Feeds inputs to the specified analyzer.
+     *
+     * @param analyzer     the analyzer
+     * @param limit        the maximum number of inputs in flight for the analyzer
+     * @param isQuarantine true if the analyzer should only replay quarantined inputs
+     * @param inputFiles   the inputs to be replayed
+     * @param quarantined  indicates whether each of the inputs is quarantined
+     */
+    private void work(CampaignAnalyzer analyzer, int limit, boolean isQuarantine, File[] inputFiles,
+                      boolean[] quarantined) {
+        // Indices of the inputs in flight in the order that they were submitted to the analyzer
+        Deque<Integer> indices = new ArrayDeque<>();
+        try {
+            while (true) {
+                while (indices.size() < limit) {
+                    // Only wait for an input if there are no inputs in flight whose results could unblock others
+                    int i = claim(quarantined, isQuarantine, indices.isEmpty());
+                    if (i == -1) {
+                        break;
+                    }
+                    analyzer.submit(inputFiles[i]);
+                    indices.add(i);
+                }
+                if (indices.isEmpty() || isStopped()) {
+                    return;
+                }
+                put(indices.remove(), analyzer.receive());
+            }
+        } catch (IOException e) {
+            fail(e);
+        } catch (InterruptedException e) {
+            // Stopped
+        } catch (RuntimeException | Error e) {
+            fail(new IOException("Unexpected error during analysis", e));
+        }
+    }
+
+    /**
+     * Claims the next input to be replayed that is quarantined if and only if the claiming analyzer is the quarantine
+     * analyzer.
+     *
+     * @param quarantined  indicates whether each of the inputs is quarantined
+     * @param isQuarantine true if the claiming analyzer is the quarantine analyzer
+     * @param block        true if this method should wait for an input to become available
+     * @return the index of the claimed input or {@code -1} if no input could be claimed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private synchronized int claim(boolean[] quarantined, boolean isQuarantine, boolean block)
+            throws InterruptedException {
+        int i = isQuarantine ? nextQuarantined : next;
+        while (i < quarantined.length && quarantined[i] != isQuarantine) {
+            // Skip inputs replayed by the other kind of analyzer
+            i++;
+        }
+        while (block && !stopped && i < quarantined.length && i >= handled + window) {
+            wait();
+        }
+        boolean claimed = !stopped && i < quarantined.length && i < handled + window;
+        if (isQuarantine) {
+            nextQuarantined = claimed ? i + 1 : i;
+        } else {
+            next = claimed ? i + 1 : i;
+        }
+        return claimed ? i : -1;
+    }
+
+    private synchronized void put(int i, AnalysisResult result) {
+        results[i % window] = result;
+        available[i % window] = true;
+        notifyAll();
+    }
+
+    private synchronized AnalysisResult take(int i) throws IOException {
+        try {
+            while (!available[i % window]) {
+                if (error != null) {
+                    throw error;
+                }
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for analysis results");
+        }
+        AnalysisResult result = results[i % window];
+        results[i % window] = null;
+        available[i % window] = false;
+        handled = i + 1;
+        notifyAll();
+        return result;
+    }
+
+    private synchronized void fail(IOException e) {
+        if (error == null) {
+            error = e;
+        }
+        stopped = true;
+        notifyAll();
+    }
+
+    private synchronized boolean isStopped() {
+        return stopped;
+    }
+
+    private synchronized void stop() {
+        stopped = true;
+        notifyAll();
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException exception = null;
+        for (CampaignAnalyzer analyzer : analyzers) {
+            try {
+                analyzer.close();
+            } catch (IOException e) {
+                exception = e;
+            }
+        }
+        if (quarantine != null) {
+            try {
+                quarantine.close();
+            } catch (IOException e) {
+                exception = e;
+            }
+        }
+        if (watchdog != null) {
+            watchdog.close();
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    interface ResultHandler {
+        /**
+         * Handles the result of replaying an input.
+         *
+         * @param index  the index of the input
+         * @param result the result of replaying the input
+         * @throws IOException if an I/O error occurs
+         */
+        void handle(int index, AnalysisResult result) throws IOException;
+    }
+}
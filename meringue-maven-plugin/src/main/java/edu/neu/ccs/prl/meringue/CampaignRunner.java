@@ -10,6 +10,7 @@ public class CampaignRunner {
     private final CampaignValues values;
     private Process process = null;
     private boolean shutdown = false;
+    private boolean finished = false;
 
     public CampaignRunner(CampaignValues values) {
         if (values == null) {
@@ -32,17 +33,39 @@ public class CampaignRunner {
         }
     }
 
-    private void run(FuzzFramework framework, Duration duration)
+    /**
+     * Runs a fuzzing campaign using the specified framework until the specified duration has elapsed, the campaign
+     * ends, or this runner is shut down. The framework must already be initialized.
+     */
+    void run(FuzzFramework framework, Duration duration)
             throws InterruptedException, IOException, MojoExecutionException {
-        long endTime = System.currentTimeMillis() + duration.toMillis();
-        while (endTime > System.currentTimeMillis()) {
-            long remaining = endTime - System.currentTimeMillis();
-            if (forkAndWait(framework, remaining)) {
-                return;
+        try {
+            long endTime = System.currentTimeMillis() + duration.toMillis();
+            while (endTime > System.currentTimeMillis()) {
+                long remaining = endTime - System.currentTimeMillis();
+                if (forkAndWait(framework, remaining)) {
+                    return;
+                }
+            }
+        } finally {
+            synchronized (this) {
+                finished = true;
+                notifyAll();
             }
         }
     }
 
+    /**
+     * Waits until the first campaign process has been started or the campaign has ended.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    synchronized void awaitStart() throws InterruptedException {
+        while (process == null && !finished && !shutdown) {
+            wait();
+        }
+    }
+
     private boolean forkAndWait(FuzzFramework framework, long timeout)
             throws IOException, MojoExecutionException, InterruptedException {
         synchronized (this) {
@@ -50,6 +73,7 @@ public class CampaignRunner {
                 return true;
             } else if (process == null) {
                 process = framework.startCampaign();
+                notifyAll();
             } else if (!framework.canRestartCampaign()) {
                 throw new MojoExecutionException("Campaign process terminated unexpectedly");
             } else {
@@ -59,7 +83,10 @@ public class CampaignRunner {
         return ProcessUtil.waitFor(process, timeout, TimeUnit.MILLISECONDS);
     }
 
-    private synchronized void shutdown() {
+    /**
+     * Stops the campaign process, if one is running, and prevents new campaign processes from being started.
+     */
+    synchronized void shutdown() {
         shutdown = true;
         if (process != null) {
             try {
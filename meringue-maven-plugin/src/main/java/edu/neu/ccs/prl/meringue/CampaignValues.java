@@ -15,6 +15,8 @@ import org.apache.maven.surefire.booter.SystemUtils;
 import java.io.File;
 import java.io.IOException;
 import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -132,6 +134,34 @@ public interface CampaignValues {
      */
     ArtifactHandlerManager getArtifactHandlerManager() throws MojoExecutionException;
 
+    /**
+     * Amount of time in milliseconds that the replay of an input must take before a Java Flight Recorder recording of
+     * the input is captured or {@code -1} if inputs should not be recorded.
+     *
+     * @return the amount of time in milliseconds that the replay of an input must take before it is recorded
+     */
+    default long getRecordingThreshold() throws MojoExecutionException {
+        return -1;
+    }
+
+    default File getRecordingDirectory() throws MojoExecutionException {
+        return new File(getOutputDirectory(), "recordings");
+    }
+
+    /**
+     * Creates the Java options that configure a {@link SlowInputRecorder} in JVMs replaying inputs.
+     *
+     * @return the Java options that configure a {@link SlowInputRecorder} or an empty list if inputs should not be
+     * recorded
+     */
+    default List<String> createRecordingOptions() throws MojoExecutionException {
+        if (getRecordingThreshold() < 0) {
+            return Collections.emptyList();
+        }
+        return Arrays.asList("-D" + SlowInputRecorder.THRESHOLD_KEY + "=" + getRecordingThreshold(),
+                             "-D" + SlowInputRecorder.DIRECTORY_KEY + "=" + getRecordingDirectory().getAbsolutePath());
+    }
+
     default DependencyResolver createDependencyResolver() throws MojoExecutionException {
         return new DependencyResolver(this);
     }
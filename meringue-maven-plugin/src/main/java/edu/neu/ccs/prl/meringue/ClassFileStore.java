@@ -0,0 +1,117 @@
+package edu.neu.ccs.prl.meringue;
+
+import java.io.*;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Stores class files keyed by JaCoCo class id in a temporary file instead of on the heap. Class files are appended to
+ * the file as they are added; only the offset of each class file is kept in memory. Class files are read back from
+ * the file when they are needed.
+ * <p>
+ * Class files can only be added before the store is {@link #close() closed} and can only be read after it is closed.
+ * <p>
+ * Thread-safe.
+ */
+final class ClassFileStore implements Closeable {
+    private final File file;
+    /**
+     * Offset in {@link #file} of the class file stored for each class id.
+     */
+    private final Map<Long, Long> offsets = new ConcurrentHashMap<>();
+    private DataOutputStream out;
+    private long size = 0;
+
+    ClassFileStore(File directory) throws IOException {
+        this.file = File.createTempFile("meringue-classes-", ".bin", directory);
+        this.file.deleteOnExit();
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+    }
+
+    /**
+     * Adds the specified class file to this store if a class file was not already stored for the specified id.
+     *
+     * @param classId the JaCoCo class id of the class file
+     * @param buffer  the class file
+     * @throws IOException           if an I/O error occurs writing the class file
+     * @throws IllegalStateException if this store is closed
+     */
+    synchronized void put(long classId, byte[] buffer) throws IOException {
+        if (out == null) {
+            throw new IllegalStateException("Class file store is closed");
+        }
+        if (!offsets.containsKey(classId)) {
+            out.writeInt(buffer.length);
+            out.write(buffer);
+            offsets.put(classId, size);
+            size += Integer.BYTES + buffer.length;
+        }
+    }
+
+    Set<Long> getClassIds() {
+        return offsets.keySet();
+    }
+
+    /**
+     * Returns the class file stored for the specified id.
+     *
+     * @param classId the JaCoCo class id of the class file
+     * @return the class file stored for the specified id or {@code null} if there is no such class file
+     * @throws IOException           if an I/O error occurs reading the class file
+     * @throws IllegalStateException if this store is not closed
+     */
+    byte[] get(long classId) throws IOException {
+        checkClosed();
+        Long offset = offsets.get(classId);
+        if (offset == null) {
+            return null;
+        }
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            in.seek(offset);
+            byte[] buffer = new byte[in.readInt()];
+            in.readFully(buffer);
+            return buffer;
+        }
+    }
+
+    /**
+     * Reads each class file in this store and passes it to the specified action. Class files are read sequentially
+     * and are not retained by this store.
+     *
+     * @param action the action to be performed for each class file
+     * @throws IOException           if an I/O error occurs reading the class files
+     * @throws IllegalStateException if this store is not closed
+     */
+    void forEach(Consumer<byte[]> action) throws IOException {
+        checkClosed();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            for (int i = 0; i < offsets.size(); i++) {
+                byte[] buffer = new byte[in.readInt()];
+                in.readFully(buffer);
+                action.accept(buffer);
+            }
+        }
+    }
+
+    /**
+     * Finishes writing the class files added to this store. Once closed, class files can no longer be added to this
+     * store, but can be read from it.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    private synchronized void checkClosed() {
+        if (out != null) {
+            throw new IllegalStateException("Class file store is still open");
+        }
+    }
+}
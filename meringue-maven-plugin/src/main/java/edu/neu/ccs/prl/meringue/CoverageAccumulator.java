@@ -0,0 +1,134 @@
+package edu.neu.ccs.prl.meringue;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataReader;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.SessionInfoStore;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Accumulates the probes hit by a sequence of inputs. Cumulative probes are stored per JaCoCo class id. When an input
+ * is recorded, only newly executed probes are looked up in the {@link ProbeIndex} of their class. Consequently, the
+ * cost of recording an input is proportional to the coverage delta for that input and not to the total number of
+ * covered classes.
+ */
+public final class CoverageAccumulator {
+    private final CoverageCalculator calculator;
+    private final ExecutionDataStore executionDataStore = new ExecutionDataStore();
+    private final SessionInfoStore sessionInfoStore = new SessionInfoStore();
+    /**
+     * Branches covered for each class in {@link #executionDataStore} keyed by class id.
+     */
+    private final Map<Long, BitSet> classCoveredBranches = new HashMap<>();
+    private long coveredBranches = 0;
+
+    public CoverageAccumulator(CoverageCalculator calculator) {
+        if (calculator == null) {
+            throw new NullPointerException();
+        }
+        this.calculator = calculator;
+    }
+
+    /**
+     * Merges the specified JaCoCo execution data into the cumulative coverage.
+     *
+     * @param execData the JaCoCo execution data to be merged
+     * @return the number of branches that were covered by the specified data but not by previously recorded data
+     * @throws IOException if an I/O error occurs reading the execution data
+     */
+    public long record(byte[] execData) throws IOException {
+        ExecutionDataStore store = new ExecutionDataStore();
+        SessionInfoStore sessions = new SessionInfoStore();
+        read(execData, store, sessions);
+        return record(store, sessions);
+    }
+
+    /**
+     * Merges the specified decoded JaCoCo execution data into the cumulative coverage. The specified stores are not
+     * modified.
+     *
+     * @param store    the execution data to be merged
+     * @param sessions the session information for the execution data
+     * @return the number of branches that were covered by the specified data but not by previously recorded data
+     * @throws IOException if an I/O error occurs analyzing a class associated with the data
+     * @see #read(byte[], ExecutionDataStore, SessionInfoStore)
+     */
+    public long record(ExecutionDataStore store, SessionInfoStore sessions) throws IOException {
+        sessions.accept(sessionInfoStore);
+        long newlyCovered = 0;
+        for (ExecutionData data : store.getContents()) {
+            newlyCovered += merge(data);
+        }
+        coveredBranches += newlyCovered;
+        return newlyCovered;
+    }
+
+    /**
+     * Decodes the specified JaCoCo execution data. Decoding does not depend on the state of any accumulator, so it can
+     * be performed on a different thread than the one recording the data.
+     *
+     * @param execData the JaCoCo execution data to be decoded
+     * @param store    the store to which the decoded execution data should be added
+     * @param sessions the store to which the decoded session information should be added
+     * @throws IOException if an I/O error occurs reading the execution data
+     */
+    public static void read(byte[] execData, ExecutionDataStore store, SessionInfoStore sessions) throws IOException {
+        ExecutionDataReader reader = new ExecutionDataReader(new ByteArrayInputStream(execData));
+        reader.setSessionInfoVisitor(sessions);
+        reader.setExecutionDataVisitor(store);
+        reader.read();
+    }
+
+    /**
+     * Returns the number of branches covered by all recorded execution data.
+     *
+     * @return the number of branches covered by all recorded execution data
+     */
+    public long getCoveredBranches() {
+        return coveredBranches;
+    }
+
+    public ExecutionDataStore getExecutionDataStore() {
+        return executionDataStore;
+    }
+
+    public SessionInfoStore getSessionInfoStore() {
+        return sessionInfoStore;
+    }
+
+    /**
+     * Merges the specified data into the cumulative store.
+     *
+     * @return the number of newly covered branches
+     * @throws IOException if an I/O error occurs analyzing the class associated with the data
+     */
+    private int merge(ExecutionData data) throws IOException {
+        ProbeIndex index = calculator.getProbeIndex(data);
+        if (index == null || !data.hasHits()) {
+            return 0;
+        }
+        boolean[] probes = data.getProbes();
+        ExecutionData existing = executionDataStore.get(data.getId());
+        if (existing == null) {
+            existing = new ExecutionData(data.getId(), data.getName(), probes.length);
+            executionDataStore.put(existing);
+            classCoveredBranches.put(data.getId(), new BitSet());
+        }
+        existing.assertCompatibility(data.getId(), data.getName(), probes.length);
+        boolean[] cumulative = existing.getProbes();
+        BitSet covered = classCoveredBranches.get(data.getId());
+        int count = 0;
+        for (int i = 0; i < probes.length; i++) {
+            if (probes[i] && !cumulative[i]) {
+                cumulative[i] = true;
+                count += index.cover(i, covered);
+            }
+        }
+        return count;
+    }
+}
@@ -2,10 +2,10 @@ package edu.neu.ccs.prl.meringue;
 
 import org.jacoco.core.analysis.Analyzer;
 import org.jacoco.core.analysis.CoverageBuilder;
-import org.jacoco.core.analysis.IClassCoverage;
 import org.jacoco.core.analysis.ICoverageVisitor;
 import org.jacoco.core.data.ExecutionData;
 import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.SessionInfoStore;
 import org.jacoco.core.internal.data.CRC64;
 import org.jacoco.core.internal.instr.InstrSupport;
 import org.jacoco.core.tools.ExecFileLoader;
@@ -15,47 +15,130 @@ import org.jacoco.report.ISourceFileLocator;
 import org.jacoco.report.MultiSourceFileLocator;
 import org.objectweb.asm.ClassReader;
 
-import java.io.ByteArrayInputStream;
-import java.io.File;
-import java.io.IOException;
-import java.io.InputStream;
-import java.net.URI;
-import java.net.URL;
-import java.net.URLClassLoader;
-import java.nio.file.*;
-import java.nio.file.attribute.BasicFileAttributes;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
-public class CoverageCalculator {
+public class CoverageCalculator implements Closeable {
     private static final int TAB_WIDTH = 4;
     final CoverageFilter filter;
-    private final Map<Long, byte[]> idBufferMap = new HashMap<>();
+    private final ClassFileStore classFileStore;
+    private final Map<Long, ProbeIndex> indexMap = new ConcurrentHashMap<>();
+    /**
+     * Classes from the Java Class Library that are included in coverage but have not been analyzed yet keyed by class
+     * id. Classes are analyzed when they are first hit.
+     */
+    private final Map<Long, LazyClass> lazyClassMap = new HashMap<>();
+    private final List<String> agentExclusions = new ArrayList<>();
+    /**
+     * Names of the classes from included artifacts that are included in coverage in the internal form used by the JVM.
+     */
+    private final Set<String> artifactClassNames = new HashSet<>();
     private final File temporaryDirectory;
+    private final ProbeIndexCache cache;
+    private final JavaClassLibrary javaClassLibrary;
     private long totalBranches = 0;
 
     CoverageCalculator(File temporaryDirectory, CoverageFilter filter) throws IOException {
+        this(temporaryDirectory, null, filter);
+    }
+
+    CoverageCalculator(File temporaryDirectory, File cacheDirectory, CoverageFilter filter) throws IOException {
         this.temporaryDirectory = temporaryDirectory;
         this.filter = filter;
-        CoverageBuilder builder = new CoverageBuilder();
-        Analyzer analyzer = new RecordingAnalyzer(new ExecutionDataStore(), builder);
+        this.cache = cacheDirectory == null ? null : new ProbeIndexCache(cacheDirectory);
+        this.classFileStore = new ClassFileStore(temporaryDirectory);
+        this.javaClassLibrary = filter.includeJavaClassLibrary() ?
+                new JavaClassLibrary(filter.getJavaHome(), filter.getJavaClassLibraryScope()) : null;
+        try {
+            initialize();
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private void initialize() throws IOException {
+        ConcurrentHashMap<String, IndexedClass> nameClassMap = new ConcurrentHashMap<>();
+        Map<String, ModuleIndex> moduleIndexMap = new ConcurrentHashMap<>();
+        List<Callable<Void>> sources = new ArrayList<>();
         for (File artifact : filter.getIncludedArtifacts()) {
-            analyzer.analyzeAll(artifact);
+            RecordingAnalyzer analyzer = new RecordingAnalyzer(sources.size(), nameClassMap, null);
+            sources.add(() -> analyzer.analyzeAllAndJoin(a -> a.analyzeAll(artifact)));
         }
-        if (filter.includeJavaClassLibrary()) {
-            File javaHome = filter.getJavaHome();
-            File jmods = new File(javaHome, "jmods");
-            if (jmods.isDirectory()) {
-                visitModularJavaClassLibrary(analyzer, javaHome);
-            } else {
-                analyzer.analyzeAll(javaHome);
+        int artifactSources = sources.size();
+        boolean modular = javaClassLibrary != null && JavaClassLibrary.isModular(filter.getJavaHome());
+        if (modular && cache != null) {
+            // Only index the Java Class Library; classes are analyzed lazily
+            for (String module : javaClassLibrary.getModules()) {
+                sources.add(() -> {
+                    ModuleIndex index = cache.getModuleIndex(javaClassLibrary, module);
+                    if (index == null) {
+                        index = ModuleIndex.create(javaClassLibrary, module, cache);
+                        cache.putModuleIndex(javaClassLibrary, module, index);
+                    }
+                    moduleIndexMap.put(module, index);
+                    return null;
+                });
+            }
+        } else if (modular) {
+            RecordingAnalyzer analyzer = new RecordingAnalyzer(sources.size(), nameClassMap, null);
+            sources.add(() -> analyzer.analyzeAllAndJoin(javaClassLibrary::analyzeAll));
+        } else if (javaClassLibrary != null) {
+            RecordingAnalyzer analyzer =
+                    new RecordingAnalyzer(sources.size(), nameClassMap, n -> javaClassLibrary.isInScope(null, n));
+            sources.add(() -> analyzer.analyzeAllAndJoin(a -> a.analyzeAll(filter.getJavaHome())));
+        }
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            for (Future<Void> future : pool.invokeAll(sources)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while analyzing classes", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            } else if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
             }
+            throw new IOException("Failed to analyze classes", e.getCause());
+        } finally {
+            pool.shutdownNow();
+            classFileStore.close();
         }
-        for (IClassCoverage classCoverage : builder.getClasses()) {
-            if (this.filter.filter(classCoverage.getName())) {
-                totalBranches += classCoverage.getBranchCounter().getTotalCount();
+        // Like JaCoCo's CoverageBuilder, resolve classes with the same name in favor of the last one encountered
+        // Classes from the Java Class Library are encountered last
+        for (String module : new TreeSet<>(moduleIndexMap.keySet())) {
+            for (ModuleIndex.Entry entry : moduleIndexMap.get(module).getEntries()) {
+                String className = entry.getClassName();
+                if (filter.filter(className) && javaClassLibrary.isInScope(module, className)) {
+                    nameClassMap.remove(className);
+                    lazyClassMap.put(entry.getClassId(), new LazyClass(module, className));
+                    totalBranches += entry.getTotalBranches();
+                }
+            }
+        }
+        for (Map.Entry<String, IndexedClass> entry : nameClassMap.entrySet()) {
+            IndexedClass c = entry.getValue();
+            indexMap.put(c.classId, c.index);
+            totalBranches += c.index.getTotalBranches();
+            if ((c.order >>> 32) < artifactSources) {
+                artifactClassNames.add(entry.getKey());
+            }
+        }
+        if (modular) {
+            // Prevent the JaCoCo agent from instrumenting classes outside the scope of the Java Class Library
+            for (String p : javaClassLibrary.getPackagesOutOfScope(nameClassMap.keySet())) {
+                agentExclusions.add(p + ".*");
             }
         }
     }
@@ -67,20 +150,65 @@ public class CoverageCalculator {
     public long calculate(byte[] execData) throws IOException {
         ExecFileLoader loader = new ExecFileLoader();
         loader.load(new ByteArrayInputStream(execData));
-        CoverageBuilder builder = new CoverageBuilder();
-        Analyzer analyzer = new RecordingAnalyzer(loader.getExecutionDataStore(), builder);
+        long hitBranches = 0;
         for (ExecutionData data : loader.getExecutionDataStore().getContents()) {
-            if (filter.filter(data.getName()) && data.hasHits() && idBufferMap.containsKey(data.getId())) {
-                analyzer.analyzeClass(idBufferMap.get(data.getId()), "");
+            ProbeIndex index = getProbeIndex(data);
+            if (index != null && data.hasHits()) {
+                hitBranches += index.calculate(data.getProbes());
             }
         }
-        long hitBranches = 0;
-        for (IClassCoverage classCoverage : builder.getClasses()) {
-            hitBranches += classCoverage.getBranchCounter().getCoveredCount();
-        }
         return hitBranches;
     }
 
+    /**
+     * Returns the probe index for the class associated with the specified execution data.
+     *
+     * @param data the execution data for the class
+     * @return the probe index for the class or {@code null} if the class is not included in coverage
+     * @throws IOException if an I/O error occurs reading the class from the Java Class Library
+     */
+    ProbeIndex getProbeIndex(ExecutionData data) throws IOException {
+        if (!filter.filter(data.getName())) {
+            return null;
+        }
+        ProbeIndex index = indexMap.get(data.getId());
+        return index == null && lazyClassMap.containsKey(data.getId()) ? analyzeLazily(data.getId()) : index;
+    }
+
+    private synchronized ProbeIndex analyzeLazily(long classId) throws IOException {
+        ProbeIndex index = indexMap.get(classId);
+        if (index == null) {
+            LazyClass c = lazyClassMap.get(classId);
+            byte[] buffer = javaClassLibrary.readClass(c.module, c.className);
+            if (CRC64.classId(buffer) != classId) {
+                throw new IOException("Java Class Library class changed during analysis: " + c.className);
+            }
+            index = cache.get(classId, c.className);
+            if (index == null) {
+                index = ProbeIndex.create(buffer);
+                cache.put(classId, index);
+            }
+            indexMap.put(classId, index);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the JaCoCo agent option that should be used for analysis JVMs.
+     *
+     * @return the JaCoCo agent option that should be used for analysis JVMs
+     */
+    public String getJacocoOption() {
+        return filter.getJacocoOption(agentExclusions);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (javaClassLibrary != null) {
+            javaClassLibrary.close();
+        }
+    }
+
     public void createReport(byte[] execData, String testDescription, JacocoReportFormat format, File directory)
             throws IOException {
         createReport(execData == null ? new byte[0] : execData, testDescription, format.createVisitor(directory),
@@ -91,12 +219,33 @@ public class CoverageCalculator {
                              boolean includeSources) throws IOException {
         ExecFileLoader loader = new ExecFileLoader();
         loader.load(new ByteArrayInputStream(execData));
+        createReport(loader.getExecutionDataStore(), loader.getSessionInfoStore(), testDescription, visitor,
+                     includeSources);
+    }
+
+    public void createReport(CoverageAccumulator accumulator, String testDescription, JacocoReportFormat format,
+                             File directory) throws IOException {
+        createReport(accumulator.getExecutionDataStore(), accumulator.getSessionInfoStore(), testDescription,
+                     format.createVisitor(directory), format.shouldIncludeSources());
+    }
+
+    private void createReport(ExecutionDataStore executionDataStore, SessionInfoStore sessionInfoStore,
+                              String testDescription, IReportVisitor visitor, boolean includeSources)
+            throws IOException {
         CoverageBuilder builder = new CoverageBuilder();
-        Analyzer analyzer = new RecordingAnalyzer(loader.getExecutionDataStore(), builder);
-        for (Long key : idBufferMap.keySet()) {
-            analyzer.analyzeClass(idBufferMap.get(key), "");
+        SuppressingAnalyzer analyzer = new SuppressingAnalyzer(executionDataStore, builder);
+        classFileStore.forEach(buffer -> analyzer.analyzeClass(buffer, ""));
+        if (!lazyClassMap.isEmpty()) {
+            javaClassLibrary.analyzeAll(new SuppressingAnalyzer(executionDataStore, builder) {
+                @Override
+                public void analyzeClass(byte[] buffer, String location) {
+                    if (lazyClassMap.containsKey(CRC64.classId(buffer))) {
+                        super.analyzeClass(buffer, location);
+                    }
+                }
+            });
         }
-        visitor.visitInfo(loader.getSessionInfoStore().getInfos(), loader.getExecutionDataStore().getContents());
+        visitor.visitInfo(sessionInfoStore.getInfos(), executionDataStore.getContents());
         ISourceFileLocator locator = includeSources ? createLocator(filter.getIncludedArtifactSources()) :
                 new MultiSourceFileLocator(TAB_WIDTH);
         visitor.visitBundle(builder.getBundle(testDescription), locator);
@@ -121,6 +270,27 @@ public class CoverageCalculator {
         return locator;
     }
 
+    /**
+     * Returns the names of the classes from included artifacts that are included in coverage in the internal form
+     * used by the JVM. Classes from the Java Class Library are not included.
+     *
+     * @return the names of the classes from included artifacts that are included in coverage
+     */
+    Set<String> getArtifactClassNames() {
+        return Collections.unmodifiableSet(artifactClassNames);
+    }
+
+    /**
+     * Returns whether the class with the specified id is included in coverage. Since JaCoCo class ids are computed
+     * from the bytecode of the class, this method returns false for ids of classes that have since been changed.
+     *
+     * @param classId the JaCoCo class id of the class
+     * @return true if the class with the specified id is included in coverage
+     */
+    boolean isIncludedClass(long classId) {
+        return indexMap.containsKey(classId) || lazyClassMap.containsKey(classId);
+    }
+
     public CoverageFilter getFilter() {
         return filter;
     }
@@ -147,27 +317,6 @@ public class CoverageCalculator {
         }
     }
 
-    private static void visitModularJavaClassLibrary(Analyzer analyzer, File javaHome) throws IOException {
-        Path p = new File(javaHome, "lib" + File.separator + "jrt-fs.jar").toPath();
-        if (Files.exists(p)) {
-            try (URLClassLoader loader = new URLClassLoader(new URL[]{p.toUri().toURL()})) {
-                try (FileSystem fs = FileSystems.newFileSystem(URI.create("jrt:/"),
-                                                               Collections.emptyMap(),
-                                                               loader)) {
-                    Files.walkFileTree(fs.getPath("/modules"), new SimpleFileVisitor<Path>() {
-                        @Override
-                        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                            try (InputStream stream = Files.newInputStream(file)) {
-                                analyzer.analyzeAll(stream, file.toString());
-                                return FileVisitResult.CONTINUE;
-                            }
-                        }
-                    });
-                }
-            }
-        }
-    }
-
     private static class SuppressingAnalyzer extends Analyzer {
         public SuppressingAnalyzer(ExecutionDataStore executionData, ICoverageVisitor coverageVisitor) {
             super(executionData, coverageVisitor);
@@ -197,18 +346,121 @@ public class CoverageCalculator {
         }
     }
 
+    private interface AnalyzerAction {
+        void run(Analyzer analyzer) throws IOException;
+    }
+
+    private static final class LazyClass {
+        private final String module;
+        private final String className;
+
+        private LazyClass(String module, String className) {
+            this.module = module;
+            this.className = className;
+        }
+    }
+
+    private static final class IndexedClass {
+        private final long order;
+        private final long classId;
+        private final ProbeIndex index;
+
+        private IndexedClass(long order, long classId, ProbeIndex index) {
+            this.order = order;
+            this.classId = classId;
+            this.index = index;
+        }
+    }
+
+    /**
+     * Traverses a single source of classes on the calling thread and forks a task to index each class it encounters.
+     * Must be run inside a {@link ForkJoinPool}.
+     */
     private class RecordingAnalyzer extends SuppressingAnalyzer {
-        public RecordingAnalyzer(ExecutionDataStore executionData, ICoverageVisitor coverageVisitor) {
-            super(executionData, coverageVisitor);
+        private final long source;
+        private final ConcurrentHashMap<String, IndexedClass> nameClassMap;
+        /**
+         * Additional filter applied to the names of classes or {@code null} if no additional filter should be applied.
+         */
+        private final Predicate<String> scope;
+        private final List<ForkJoinTask<?>> tasks = new ArrayList<>();
+
+        public RecordingAnalyzer(long source, ConcurrentHashMap<String, IndexedClass> nameClassMap,
+                                 Predicate<String> scope) {
+            super(new ExecutionDataStore(), c -> {
+            });
+            this.source = source;
+            this.nameClassMap = nameClassMap;
+            this.scope = scope;
+        }
+
+        Void analyzeAllAndJoin(AnalyzerAction action) throws IOException {
+            try {
+                action.run(this);
+            } finally {
+                for (ForkJoinTask<?> task : tasks) {
+                    task.join();
+                }
+            }
+            return null;
         }
 
         @Override
         public void analyzeClass(final byte[] buffer, final String location) {
             final ClassReader reader = InstrSupport.classReaderFor(buffer);
-            if (filter.filter(reader.getClassName())) {
-                long classId = CRC64.classId(buffer);
-                idBufferMap.put(classId, buffer);
-                super.analyzeClass(buffer, location);
+            if (filter.filter(reader.getClassName()) && (scope == null || scope.test(reader.getClassName()))) {
+                long order = (source << 32) | tasks.size();
+                String className = reader.getClassName();
+                tasks.add(new RecordTask(order, className, buffer).fork());
+            }
+        }
+
+        private void record(long order, String className, byte[] buffer) {
+            long classId = CRC64.classId(buffer);
+            try {
+                classFileStore.put(classId, buffer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            ProbeIndex index = cache == null ? null : cache.get(classId, className);
+            if (index == null) {
+                try {
+                    index = ProbeIndex.create(buffer);
+                } catch (RuntimeException e) {
+                    // Suppress the exception so that other classes are still analyzed
+                    return;
+                }
+                if (index != null && cache != null) {
+                    cache.put(classId, index);
+                }
+            }
+            // Like JaCoCo, only count one class for each class name
+            if (index != null) {
+                nameClassMap.merge(index.getClassName(), new IndexedClass(order, classId, index),
+                                   (c1, c2) -> c1.order >= c2.order ? c1 : c2);
+            }
+        }
+
+        private final class RecordTask extends RecursiveAction {
+            private static final long serialVersionUID = 3309845012734866290L;
+            private final long order;
+            private final String className;
+            /**
+             * Cleared once this task runs so that completed tasks do not retain class files.
+             */
+            private byte[] buffer;
+
+            private RecordTask(long order, String className, byte[] buffer) {
+                this.order = order;
+                this.className = className;
+                this.buffer = buffer;
+            }
+
+            @Override
+            protected void compute() {
+                byte[] b = buffer;
+                buffer = null;
+                record(order, className, b);
             }
         }
     }
@@ -18,10 +18,12 @@ public final class CoverageFilter {
     private final WildcardMatcher excludes;
     private final ArtifactSourceResolver resolver;
     private final File javaExecutable;
+    private final List<String> javaClassLibraryScope;
 
     public CoverageFilter(AnalysisValues values) throws MojoExecutionException {
         this(new ClassFilter(values), values.getProject(), values.createArtifactSourceResolver(),
-             values.includeJavaClassLibrary() ? values.getJavaExecutable() : null);
+             values.includeJavaClassLibrary() ? values.getJavaExecutable() : null,
+             values.getJavaClassLibraryScope());
     }
 
     @Deprecated
@@ -32,13 +34,19 @@ public final class CoverageFilter {
 
     public CoverageFilter(ClassFilter classFilter, MavenProject project, ArtifactSourceResolver resolver,
                           File javaExecutable) {
-        if (classFilter == null || project == null || resolver == null) {
+        this(classFilter, project, resolver, javaExecutable, Collections.emptyList());
+    }
+
+    public CoverageFilter(ClassFilter classFilter, MavenProject project, ArtifactSourceResolver resolver,
+                          File javaExecutable, List<String> javaClassLibraryScope) {
+        if (classFilter == null || project == null || resolver == null || javaClassLibraryScope == null) {
             throw new NullPointerException();
         }
         this.classFilter = classFilter;
         this.project = project;
         this.resolver = resolver;
         this.javaExecutable = javaExecutable;
+        this.javaClassLibraryScope = Collections.unmodifiableList(new ArrayList<>(javaClassLibraryScope));
         String includeString = classFilter.getIncludeString();
         this.includes = new WildcardMatcher(toVMName(includeString.isEmpty() ? "*" : includeString));
         this.excludes = new WildcardMatcher(toVMName(classFilter.getExcludeString()));
@@ -48,6 +56,17 @@ public final class CoverageFilter {
         return javaExecutable != null;
     }
 
+    /**
+     * Returns the modules and packages of the Java Class Library to be included in coverage. Each entry is either the
+     * name of a module (e.g., {@code java.base}) or the name of a module followed by a '/' and the name of a package in
+     * that module (e.g., {@code java.base/java.util.regex}). If empty, all modules are included.
+     *
+     * @return the modules and packages of the Java Class Library to be included in coverage
+     */
+    public List<String> getJavaClassLibraryScope() {
+        return javaClassLibraryScope;
+    }
+
     public File getJavaHome() {
         return FileUtil.javaExecToJavaHome(javaExecutable);
     }
@@ -89,20 +108,40 @@ public final class CoverageFilter {
     }
 
     public CoverageCalculator createCoverageCalculator(File temporaryDirectory) throws IOException {
+        return createCoverageCalculator(temporaryDirectory, null);
+    }
+
+    public CoverageCalculator createCoverageCalculator(File temporaryDirectory, File cacheDirectory)
+            throws IOException {
         try {
-            return new CoverageCalculator(temporaryDirectory, this);
+            return new CoverageCalculator(temporaryDirectory, cacheDirectory, this);
         } catch (IOException e) {
             throw new IOException("Failed to initialize JaCoCo coverage calculator", e);
         }
     }
 
     public String getJacocoOption() {
+        return getJacocoOption(Collections.emptyList());
+    }
+
+    /**
+     * Returns the JaCoCo agent option for this filter with the specified additional exclusions.
+     *
+     * @param additionalExclusions additional class name patterns (which may use wildcard characters) that should be
+     *                             excluded from instrumentation
+     * @return the JaCoCo agent option for this filter
+     */
+    public String getJacocoOption(Collection<String> additionalExclusions) {
         File agentJar = FileUtil.getClassPathElement(PreMain.class);
         if (!agentJar.exists()) {
             throw new IllegalStateException("JaCoCo agent jar does not exist: " + agentJar);
         }
         String opt = String.format("-javaagent:%s=output=none", agentJar.getAbsolutePath());
         String excludeString = classFilter.getExcludeString();
+        if (!additionalExclusions.isEmpty()) {
+            String additional = String.join(":", additionalExclusions);
+            excludeString = excludeString.isEmpty() ? additional : excludeString + ":" + additional;
+        }
         if (!excludeString.isEmpty()) {
             opt += ",excludes=" + excludeString;
         }
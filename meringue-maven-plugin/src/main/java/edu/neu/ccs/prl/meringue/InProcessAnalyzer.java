@@ -0,0 +1,409 @@
+package edu.neu.ccs.prl.meringue;
+
+import edu.neu.ccs.prl.meringue.report.IncidentReport;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.SessionInfoStore;
+import org.jacoco.core.instr.Instrumenter;
+import org.jacoco.core.runtime.LoggerRuntime;
+import org.jacoco.core.runtime.RuntimeData;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.URL;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays inputs inside the analyzing JVM instead of in a forked analysis JVM. The analysis class path is loaded by an
+ * {@link InstrumentingClassLoader}, which adds JaCoCo probes to the classes included in coverage. The framework's
+ * {@link Replayer} is driven directly on a dedicated thread and coverage is collected from an in-memory JaCoCo runtime,
+ * so no JVM is launched and results are not encoded.
+ * <p>
+ * If the replayer fails outside of an input or the thread replaying an input that exceeded the timeout cannot be
+ * reclaimed, the analysis cannot continue in this JVM. {@link #analyze} then returns early so that the remaining inputs
+ * can be replayed in analysis JVMs.
+ */
+final class InProcessAnalyzer implements Closeable {
+    private final LoggerRuntime runtime = new LoggerRuntime();
+    private final RuntimeData data = new RuntimeData();
+    private final InstrumentingClassLoader loader;
+    private final Replayer replayer;
+    private final StackTraceCleaner cleaner;
+    /**
+     * Maximum amount of time in milliseconds to replay a single input or {@code -1} if there is no timeout.
+     */
+    private final long timeout;
+    /**
+     * Previous value of the system property that indicates that the analysis phase is running.
+     */
+    private final String analysisProperty;
+    /**
+     * True if output written by the thread replaying inputs should be shown.
+     */
+    private final boolean verbose;
+    /**
+     * Recorder capturing flight recordings of slow inputs or {@code null} if slow inputs should not be recorded.
+     */
+    private final SlowInputRecorder recorder;
+    /**
+     * True if a thread replaying an input could not be reclaimed, so this analyzer can no longer be used.
+     */
+    private boolean abandoned;
+
+    /**
+     * @param classPath      the analysis class path
+     * @param classNames     the names of the classes to be included in coverage in the internal form used by the JVM
+     * @param configuration  the configuration of the campaign
+     * @param replayerClass  the name of the framework's replayer class
+     * @param maxTraceSize   the maximum number of frames to include in stack traces of failures
+     * @param timeout        the maximum amount of time in seconds to replay a single input or {@code -1} if there is no
+     *                       timeout
+     * @param verbose        true if output written while replaying inputs should be shown
+     * @param recorder       recorder capturing flight recordings of slow inputs or {@code null} if slow inputs should
+     *                       not be recorded; closed when this analyzer is closed
+     * @throws IOException if the replayer could not be configured
+     */
+    InProcessAnalyzer(List<File> classPath, Collection<String> classNames, CampaignConfiguration configuration,
+                      String replayerClass, int maxTraceSize, long timeout, boolean verbose,
+                      SlowInputRecorder recorder) throws IOException {
+        if (timeout < -1) {
+            throw new IllegalArgumentException("Invalid timeout: " + timeout);
+        }
+        URL[] urls = new URL[classPath.size()];
+        for (int i = 0; i < urls.length; i++) {
+            urls[i] = classPath.get(i).toURI().toURL();
+        }
+        this.timeout = timeout < 0 ? -1 : TimeUnit.SECONDS.toMillis(timeout);
+        this.cleaner = new StackTraceCleaner(maxTraceSize);
+        this.verbose = verbose;
+        this.recorder = recorder;
+        this.analysisProperty = System.setProperty("meringue.analysis", "true");
+        try {
+            runtime.startup(data);
+        } catch (Exception e) {
+            restoreAnalysisProperty();
+            throw new IOException("Failed to start JaCoCo runtime", e);
+        }
+        this.loader = new InstrumentingClassLoader(urls, new Instrumenter(runtime), classNames);
+        Thread thread = Thread.currentThread();
+        ClassLoader contextClassLoader = thread.getContextClassLoader();
+        thread.setContextClassLoader(loader);
+        try {
+            this.replayer = (Replayer) Class.forName(replayerClass, true, loader).getDeclaredConstructor()
+                                            .newInstance();
+            replayer.configure(configuration.getTestClassName(), configuration.getTestMethodName(), loader);
+        } catch (Throwable t) {
+            close();
+            throw new IOException("Failed to configure replayer", t);
+        } finally {
+            thread.setContextClassLoader(contextClassLoader);
+        }
+    }
+
+    /**
+     * Replays the specified inputs in order and passes their results to the specified handler. Stops early if the
+     * analysis cannot continue in this JVM; the input being replayed when the analysis stopped does not have a result
+     * unless it exceeded the timeout.
+     *
+     * @param inputFiles the inputs to be replayed
+     * @param handler    the handler to which results should be passed
+     * @return the number of inputs whose results were passed to the handler
+     * @throws IOException if the handler throws an exception
+     */
+    int analyze(File[] inputFiles, CampaignAnalyzerPool.ResultHandler handler) throws IOException {
+        if (abandoned) {
+            return 0;
+        }
+        Manager manager = new Manager(inputFiles, handler);
+        Thread thread = new Thread(manager::run, "meringue-in-process-analysis");
+        thread.setDaemon(true);
+        thread.setContextClassLoader(loader);
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        if (!verbose) {
+            // Like the output of analysis JVMs, discard the output written while replaying inputs
+            System.setOut(new PrintStream(new OutputFilter(out, thread), true));
+            System.setErr(new PrintStream(new OutputFilter(err, thread), true));
+        }
+        try {
+            thread.start();
+            return manager.await();
+        } finally {
+            System.setOut(out);
+            System.setErr(err);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (recorder != null) {
+            recorder.close();
+        }
+        runtime.shutdown();
+        restoreAnalysisProperty();
+        if (!abandoned) {
+            // Classes used by an abandoned thread must remain available
+            loader.close();
+        }
+    }
+
+    private void restoreAnalysisProperty() {
+        if (analysisProperty == null) {
+            System.clearProperty("meringue.analysis");
+        } else {
+            System.setProperty("meringue.analysis", analysisProperty);
+        }
+    }
+
+    /**
+     * Discards bytes written by a specific thread and passes bytes written by other threads to the underlying stream.
+     */
+    private static final class OutputFilter extends FilterOutputStream {
+        private final Thread discarded;
+
+        private OutputFilter(OutputStream out, Thread discarded) {
+            super(out);
+            this.discarded = discarded;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (Thread.currentThread() != discarded) {
+                out.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (Thread.currentThread() != discarded) {
+                out.write(b, off, len);
+            }
+        }
+    }
+
+    /**
+     * Hands out inputs to the replayer and passes results to the handler. Results are passed to the handler by the
+     * thread replaying the inputs or, if the thread cannot be reclaimed, by the watchdog's thread. In both cases, the
+     * results are passed while holding this manager's lock.
+     */
+    private final class Manager implements ReplayerManager {
+        private final File[] inputFiles;
+        private final CampaignAnalyzerPool.ResultHandler handler;
+        private final ReplayWatchdog watchdog;
+        /**
+         * Index of the next input to be handed out.
+         */
+        private int next;
+        /**
+         * Number of inputs whose results were passed to the handler.
+         */
+        private int handled;
+        /**
+         * Value of {@link System#nanoTime()} when the input currently being replayed was handed out.
+         */
+        private long startTime;
+        /**
+         * CPU time used by the replaying thread when the input currently being replayed was handed out.
+         */
+        private long startCpuTime;
+        /**
+         * Number of bytes allocated by the replaying thread when the input currently being replayed was handed out.
+         */
+        private long startAllocatedBytes;
+        /**
+         * Indicates whether an input has been handed out whose result has not been passed to the handler.
+         */
+        private boolean pending;
+        private boolean finished;
+        /**
+         * Exception thrown by the handler or {@code null} if the handler has not thrown an exception.
+         */
+        private IOException error;
+
+        private Manager(File[] inputFiles, CampaignAnalyzerPool.ResultHandler handler) {
+            this.inputFiles = inputFiles;
+            this.handler = handler;
+            this.watchdog = timeout < 0 ? null : new ReplayWatchdog(timeout, this::abandon);
+        }
+
+        private void run() {
+            try {
+                while (true) {
+                    try {
+                        replayer.accept(this);
+                        break;
+                    } catch (Throwable t) {
+                        // Continue replaying inputs if the replayer was stopped by the watchdog
+                        if (!recover()) {
+                            break;
+                        }
+                    }
+                }
+            } finally {
+                finish();
+            }
+        }
+
+        private synchronized int await() throws IOException {
+            try {
+                while (!finished) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for in-process analysis", e);
+            }
+            if (watchdog != null) {
+                watchdog.close();
+            }
+            if (error != null) {
+                throw error;
+            }
+            return handled;
+        }
+
+        private synchronized void finish() {
+            finished = true;
+            notifyAll();
+        }
+
+        @Override
+        public synchronized boolean hasNextInput() {
+            return !finished && error == null && next < inputFiles.length;
+        }
+
+        @Override
+        public File nextInput() {
+            if (!hasNextInput()) {
+                throw new IllegalStateException();
+            }
+            synchronized (this) {
+                data.reset();
+                pending = true;
+                if (recorder != null) {
+                    recorder.start(inputFiles[next]);
+                }
+                startCpuTime = ThreadUsageUtil.getCpuTime();
+                startAllocatedBytes = ThreadUsageUtil.getAllocatedBytes();
+                startTime = System.nanoTime();
+                if (watchdog != null) {
+                    watchdog.start();
+                }
+                return inputFiles[next++];
+            }
+        }
+
+        @Override
+        public void handleResult(Throwable failure) throws IOException {
+            boolean timedOut = watchdog != null && watchdog.finish();
+            // Measure before stopping the recording, which writes the recording to disk on this thread
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - startTime);
+            long cpuTime = ThreadUsageUtil.difference(startCpuTime, ThreadUsageUtil.getCpuTime());
+            long allocatedBytes = ThreadUsageUtil.difference(startAllocatedBytes, ThreadUsageUtil.getAllocatedBytes());
+            finishRecording();
+            synchronized (this) {
+                if (finished) {
+                    // The thread was abandoned
+                    return;
+                }
+                pending = false;
+                if (timedOut) {
+                    handle(createTimeout(elapsed));
+                } else {
+                    handle(createResult(failure, elapsed, cpuTime, allocatedBytes));
+                }
+                if (error != null) {
+                    throw error;
+                }
+            }
+        }
+
+        private AnalysisResult createTimeout(Duration elapsed) {
+            return new AnalysisResult(inputFiles[next - 1], IncidentReport.Type.TIMEOUT, null, elapsed);
+        }
+
+        private AnalysisResult createResult(Throwable failure, Duration elapsed, long cpuTime, long allocatedBytes) {
+            Duration cpu = cpuTime < 0 ? null : Duration.ofNanos(cpuTime);
+            ExecutionDataStore store = new ExecutionDataStore();
+            SessionInfoStore sessions = new SessionInfoStore();
+            // Copy the probes since the runtime resets them in place
+            data.collect(d -> {
+                if (d.hasHits()) {
+                    store.put(new ExecutionData(d.getId(), d.getName(), d.getProbes().clone()));
+                }
+            }, sessions, true);
+            if (failure == null) {
+                return new AnalysisResult(inputFiles[next - 1], store, sessions, null, null, elapsed, cpu,
+                                          allocatedBytes);
+            }
+            Throwable rootCause = cleaner.getRootCause(failure);
+            // Like traces received from analysis JVMs, omit the class loader and module of each frame
+            StackTraceElement[] trace = cleaner.cleanStackTrace(rootCause)
+                                               .stream()
+                                               .map(e -> new StackTraceElement(e.getClassName(), e.getMethodName(),
+                                                                               e.getFileName(), e.getLineNumber()))
+                                               .toArray(StackTraceElement[]::new);
+            return new AnalysisResult(inputFiles[next - 1], store, sessions,
+                                      new Failure(rootCause.getClass().getName(), trace), rootCause.getMessage(),
+                                      elapsed, cpu, allocatedBytes);
+        }
+
+        private void handle(AnalysisResult result) {
+            try {
+                handler.handle(handled, result);
+                handled++;
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+
+        /**
+         * Passes a timeout result for the current input to the handler if the thread replaying the input was reclaimed
+         * by the watchdog without passing a result.
+         *
+         * @return true if a timeout result was passed to the handler
+         */
+        private boolean recover() {
+            boolean timedOut = watchdog != null && watchdog.finish();
+            finishRecording();
+            synchronized (this) {
+                if (!pending || !timedOut || finished) {
+                    return false;
+                }
+                pending = false;
+                handle(createTimeout(Duration.ofNanos(System.nanoTime() - startTime)));
+                return error == null;
+            }
+        }
+
+        /**
+         * Called by the watchdog if the thread replaying the current input cannot be reclaimed.
+         */
+        private synchronized void abandon() {
+            finishRecording();
+            if (pending && !finished) {
+                abandoned = true;
+                pending = false;
+                handle(createTimeout(Duration.ofNanos(System.nanoTime() - startTime)));
+                finish();
+            }
+        }
+
+        private void finishRecording() {
+            if (recorder != null) {
+                recorder.finish();
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package edu.neu.ccs.prl.meringue;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds the inputs saved by a running fuzzing campaign. The campaign directory and its subdirectories are watched using
+ * a {@link WatchService}, so that new inputs are noticed as soon as they are written. The inputs themselves are listed
+ * using {@link FuzzFramework#getCorpusFiles()} and {@link FuzzFramework#getFailureFiles()}, so only files that the
+ * framework considers to be inputs are reported. An input is only reported once its size and modification time have
+ * not changed for {@link #SETTLE_MILLIS} milliseconds, so partially written inputs are not reported.
+ * <p>
+ * Each input is reported at most once. Inputs are reported in the order in which they were last modified.
+ */
+final class InputWatcher implements Closeable {
+    /**
+     * Amount of time in milliseconds for which an input must not change before it is reported.
+     */
+    private static final long SETTLE_MILLIS = 1000;
+    private final FuzzFramework framework;
+    private final WatchService service;
+    /**
+     * Inputs that have been reported.
+     */
+    private final Set<File> reported = new HashSet<>();
+    /**
+     * Inputs that have not settled yet mapped to their size and modification time when they were last seen to change
+     * and the value of {@link System#nanoTime()} at that point.
+     */
+    private final Map<File, long[]> pending = new HashMap<>();
+
+    /**
+     * @param framework         the framework running the campaign; the campaign must already be started
+     * @param campaignDirectory the directory to which the campaign writes its output
+     * @throws IOException if an I/O error occurs watching the campaign directory
+     */
+    InputWatcher(FuzzFramework framework, File campaignDirectory) throws IOException {
+        if (framework == null) {
+            throw new NullPointerException();
+        }
+        this.framework = framework;
+        this.service = FileSystems.getDefault().newWatchService();
+        try {
+            register(campaignDirectory);
+        } catch (IOException e) {
+            service.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Waits until new inputs have settled or the specified amount of time has elapsed.
+     *
+     * @param timeout the maximum amount of time in milliseconds to wait
+     * @return the new inputs that have settled in the order in which they were last modified, possibly none
+     * @throws IOException if an I/O error occurs listing the inputs or this thread is interrupted while waiting
+     */
+    File[] await(long timeout) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        try {
+            while (true) {
+                File[] inputs = scan(false);
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (inputs.length > 0 || remaining <= 0) {
+                    return inputs;
+                } else if (pending.isEmpty()) {
+                    drain(service.poll(remaining, TimeUnit.MILLISECONDS));
+                } else {
+                    // Wait for the pending inputs to settle instead of waking up for every write to them
+                    Thread.sleep(Math.min(remaining, getSettleDelay()));
+                    drain(service.poll());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for new inputs");
+        }
+    }
+
+    /**
+     * Returns all the new inputs, including those that have not settled yet. Should only be called once the campaign
+     * has ended.
+     *
+     * @return the new inputs in the order in which they were last modified
+     * @throws IOException if an I/O error occurs listing the inputs
+     */
+    File[] collect() throws IOException {
+        return scan(true);
+    }
+
+    private File[] scan(boolean all) throws IOException {
+        List<File> inputs = new ArrayList<>();
+        for (File[] files : new File[][]{framework.getCorpusFiles(), framework.getFailureFiles()}) {
+            if (files != null) {
+                inputs.addAll(Arrays.asList(files));
+            }
+        }
+        long now = System.nanoTime();
+        List<File> settled = new ArrayList<>();
+        for (File input : inputs) {
+            if (reported.contains(input) || !input.isFile()) {
+                continue;
+            }
+            long[] state = new long[]{input.length(), input.lastModified(), now};
+            long[] previous = pending.get(input);
+            if (all || (previous != null && previous[0] == state[0] && previous[1] == state[1] &&
+                    now - previous[2] >= TimeUnit.MILLISECONDS.toNanos(SETTLE_MILLIS))) {
+                pending.remove(input);
+                reported.add(input);
+                settled.add(input);
+            } else if (previous == null || previous[0] != state[0] || previous[1] != state[1]) {
+                pending.put(input, state);
+            }
+        }
+        // Forget pending inputs that were removed before they settled
+        pending.keySet().retainAll(new HashSet<>(inputs));
+        settled.sort(Comparator.comparingLong(File::lastModified));
+        return settled.toArray(new File[0]);
+    }
+
+    /**
+     * Returns the amount of time in milliseconds until the first pending input could settle.
+     */
+    private long getSettleDelay() {
+        long now = System.nanoTime();
+        long delay = SETTLE_MILLIS;
+        for (long[] state : pending.values()) {
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(now - state[2]);
+            delay = Math.min(delay, SETTLE_MILLIS - elapsed);
+        }
+        // Round up so that the pending input has settled by the next scan
+        return Math.max(delay, 0) + 1;
+    }
+
+    /**
+     * Processes the events of the specified key and of any other signalled keys. Directories created in a watched
+     * directory are also watched.
+     */
+    private void drain(WatchKey key) throws IOException {
+        while (key != null) {
+            Path directory = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                    File child = directory.resolve((Path) event.context()).toFile();
+                    if (child.isDirectory()) {
+                        register(child);
+                    }
+                }
+            }
+            key.reset();
+            key = service.poll();
+        }
+    }
+
+    private void register(File directory) throws IOException {
+        try {
+            directory.toPath().register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                                        StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (NoSuchFileException e) {
+            // The directory was removed before it could be watched
+            return;
+        }
+        File[] children = directory.listFiles(File::isDirectory);
+        if (children != null) {
+            for (File child : children) {
+                register(child);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        service.close();
+    }
+}
@@ -0,0 +1,121 @@
+package edu.neu.ccs.prl.meringue;
+
+import org.jacoco.core.instr.Instrumenter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.net.URLConnection;
+import java.security.CodeSource;
+import java.security.ProtectionDomain;
+import java.security.cert.Certificate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Loads the classes of the analysis class path in isolation from the classes of the analyzing JVM and instruments
+ * classes included in coverage using JaCoCo. Only classes from the Java Class Library and the interfaces used to drive
+ * a {@link Replayer} are shared with the analyzing JVM.
+ */
+final class InstrumentingClassLoader extends URLClassLoader {
+    private final Instrumenter instrumenter;
+    /**
+     * Names of the classes to be instrumented in the internal form used by the JVM.
+     */
+    private final Set<String> classNames;
+
+    /**
+     * @param urls         the analysis class path
+     * @param instrumenter the instrumenter used to add JaCoCo probes to classes
+     * @param classNames   the names of the classes to be instrumented in the internal form used by the JVM
+     */
+    InstrumentingClassLoader(URL[] urls, Instrumenter instrumenter, Collection<String> classNames) {
+        // Delegate to the extension (or platform) class loader instead of the class loader of the analyzing JVM
+        super(urls, ClassLoader.getSystemClassLoader().getParent());
+        if (instrumenter == null) {
+            throw new NullPointerException();
+        }
+        this.instrumenter = instrumenter;
+        this.classNames = Collections.unmodifiableSet(new HashSet<>(classNames));
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        if (name.equals(Replayer.class.getName())) {
+            return Replayer.class;
+        } else if (name.equals(ReplayerManager.class.getName())) {
+            return ReplayerManager.class;
+        }
+        return super.loadClass(name, resolve);
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        String internalName = name.replace('.', '/');
+        if (!classNames.contains(internalName)) {
+            return super.findClass(name);
+        }
+        URL url = findResource(internalName + ".class");
+        if (url == null) {
+            throw new ClassNotFoundException(name);
+        }
+        byte[] buffer;
+        URL location;
+        try {
+            URLConnection connection = url.openConnection();
+            location = getLocation(url, connection, internalName + ".class");
+            try (InputStream in = connection.getInputStream()) {
+                buffer = readAllBytes(in);
+            }
+        } catch (IOException e) {
+            throw new ClassNotFoundException(name, e);
+        }
+        try {
+            buffer = instrumenter.instrument(buffer, name);
+        } catch (IOException e) {
+            // Like the JaCoCo agent, load the class without instrumentation
+        }
+        int index = name.lastIndexOf('.');
+        if (index != -1) {
+            definePackage(name.substring(0, index));
+        }
+        CodeSource codeSource = new CodeSource(location, (Certificate[]) null);
+        ProtectionDomain domain = new ProtectionDomain(codeSource, null, this, null);
+        return defineClass(name, buffer, 0, buffer.length, domain);
+    }
+
+    private void definePackage(String packageName) {
+        try {
+            definePackage(packageName, null, null, null, null, null, null, null);
+        } catch (IllegalArgumentException e) {
+            // The package was already defined
+        }
+    }
+
+    /**
+     * Returns the URL of the class path element from which the specified resource is loaded.
+     */
+    private static URL getLocation(URL url, URLConnection connection, String resourceName)
+            throws MalformedURLException {
+        if (connection instanceof JarURLConnection) {
+            return ((JarURLConnection) connection).getJarFileURL();
+        }
+        String s = url.toString();
+        return new URL(s.substring(0, s.length() - resourceName.length()));
+    }
+
+    private static byte[] readAllBytes(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
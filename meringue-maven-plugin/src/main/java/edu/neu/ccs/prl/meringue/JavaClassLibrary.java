@@ -0,0 +1,243 @@
+package edu.neu.ccs.prl.meringue;
+
+import org.jacoco.core.analysis.Analyzer;
+import org.jacoco.core.internal.data.CRC64;
+
+import java.io.*;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Provides access to the classes of the modular Java Class Library (JCL) of a Java installation through its jrt
+ * file system. Classes can be limited to a scope consisting of entire modules (e.g., {@code java.base}) and packages
+ * within a module (e.g., {@code java.base/java.util.regex}). A package entry includes the subpackages of the package.
+ */
+final class JavaClassLibrary implements Closeable {
+    private final File javaHome;
+    /**
+     * Packages (in internal form followed by a '/') included in the scope for each module. If empty, all modules are
+     * included.
+     */
+    private final Map<String, List<String>> scope;
+    private URLClassLoader loader;
+    private FileSystem fileSystem;
+
+    JavaClassLibrary(File javaHome, Collection<String> scope) {
+        if (javaHome == null) {
+            throw new NullPointerException();
+        }
+        this.javaHome = javaHome;
+        this.scope = parseScope(scope);
+    }
+
+    /**
+     * Returns true if the specified Java installation provides a jrt file system.
+     *
+     * @param javaHome the Java installation
+     * @return true if the specified Java installation provides a jrt file system
+     */
+    static boolean isModular(File javaHome) {
+        return new File(javaHome, "jmods").isDirectory() && getJrtFileSystemJar(javaHome).isFile();
+    }
+
+    /**
+     * Returns a key that identifies the contents of the Java installation.
+     *
+     * @return a key that identifies the contents of the Java installation
+     * @throws IOException if an I/O error occurs
+     */
+    String getKey() throws IOException {
+        File modules = new File(javaHome, "lib" + File.separator + "modules");
+        File release = new File(javaHome, "release");
+        String description = javaHome.getCanonicalPath() + File.pathSeparator + modules.length() + File.pathSeparator
+                + modules.lastModified() + File.pathSeparator
+                + (release.isFile() ? new String(Files.readAllBytes(release.toPath()), StandardCharsets.UTF_8) : "");
+        return String.format("%016x", CRC64.classId(description.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Returns the names of the modules in the scope.
+     *
+     * @return the names of the modules in the scope
+     * @throws IOException if an I/O error occurs
+     */
+    List<String> getModules() throws IOException {
+        try (Stream<Path> modules = Files.list(getFileSystem().getPath("/modules"))) {
+            return modules.map(p -> p.getFileName().toString())
+                          .filter(m -> scope.isEmpty() || scope.containsKey(m))
+                          .sorted()
+                          .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Returns true if the class with the specified name is in the scope.
+     *
+     * @param module    the name of the module containing the class or {@code null} if the module is unknown; if
+     *                  the module is unknown, the module of each entry in the scope is ignored
+     * @param className the internal name of the class
+     * @return true if the class with the specified name is in the scope
+     */
+    boolean isInScope(String module, String className) {
+        if (scope.isEmpty()) {
+            return true;
+        } else if (module == null) {
+            return scope.values().stream().anyMatch(packages -> matches(packages, className));
+        }
+        List<String> packages = scope.get(module);
+        return packages != null && matches(packages, className);
+    }
+
+    /**
+     * Reads all the class files of the specified module and passes them to the specified visitor.
+     *
+     * @param module  the name of the module
+     * @param visitor the visitor that should be passed the class files
+     * @throws IOException if an I/O error occurs
+     */
+    void visitClasses(String module, ClassFileVisitor visitor) throws IOException {
+        Path root = getFileSystem().getPath("/modules", module);
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(root)) {
+            files = walk.filter(p -> p.toString().endsWith(".class")).sorted().collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            String className = root.relativize(file).toString();
+            className = className.substring(0, className.length() - ".class".length());
+            visitor.visit(className, Files.readAllBytes(file));
+        }
+    }
+
+    /**
+     * Reads the class files that are in the scope and passes them to the specified analyzer.
+     *
+     * @param analyzer the analyzer that should be passed the class files
+     * @throws IOException if an I/O error occurs
+     */
+    void analyzeAll(Analyzer analyzer) throws IOException {
+        for (String module : getModules()) {
+            visitClasses(module, (className, buffer) -> {
+                if (isInScope(module, className)) {
+                    analyzer.analyzeClass(buffer, module + "/" + className);
+                }
+            });
+        }
+    }
+
+    /**
+     * Reads the class file for the specified class.
+     *
+     * @param module    the name of the module containing the class
+     * @param className the internal name of the class
+     * @return the class file
+     * @throws IOException if an I/O error occurs
+     */
+    byte[] readClass(String module, String className) throws IOException {
+        return Files.readAllBytes(getFileSystem().getPath("/modules", module, className + ".class"));
+    }
+
+    /**
+     * Returns the names of packages (in the form used by JaCoCo's agent) that are not in the scope and that do not
+     * contain any packages that are in the scope or any of the specified classes. Packages that are contained by
+     * another returned package are omitted.
+     *
+     * @param classNames the internal names of classes whose packages must not be returned
+     * @return the names of packages that are not in the scope
+     * @throws IOException if an I/O error occurs
+     */
+    List<String> getPackagesOutOfScope(Collection<String> classNames) throws IOException {
+        if (scope.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Set<String> included = new HashSet<>();
+        for (String className : classNames) {
+            included.add(className.substring(0, Math.max(className.lastIndexOf('/'), 0)));
+        }
+        Set<String> excluded = new TreeSet<>();
+        try (DirectoryStream<Path> packages = Files.newDirectoryStream(getFileSystem().getPath("/packages"))) {
+            for (Path p : packages) {
+                String name = p.getFileName().toString().replace('.', '/');
+                boolean inScope;
+                try (Stream<Path> modules = Files.list(p)) {
+                    inScope = modules.anyMatch(m -> isInScope(m.getFileName().toString(), name + "/"));
+                }
+                (inScope ? included : excluded).add(name);
+            }
+        }
+        // Keep packages that are included or the ancestors of an included package
+        excluded.removeIf(e -> included.stream().anyMatch(i -> i.equals(e) || i.startsWith(e + "/")));
+        // Remove packages that are covered by an excluded ancestor
+        excluded.removeIf(e -> {
+            for (int i = e.lastIndexOf('/'); i > 0; i = e.lastIndexOf('/', i - 1)) {
+                if (excluded.contains(e.substring(0, i))) {
+                    return true;
+                }
+            }
+            return false;
+        });
+        return excluded.stream().map(e -> e.replace('/', '.')).collect(Collectors.toList());
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (fileSystem != null) {
+                fileSystem.close();
+            }
+        } finally {
+            fileSystem = null;
+            if (loader != null) {
+                loader.close();
+                loader = null;
+            }
+        }
+    }
+
+    private synchronized FileSystem getFileSystem() throws IOException {
+        if (fileSystem == null) {
+            loader = new URLClassLoader(new URL[]{getJrtFileSystemJar(javaHome).toURI().toURL()});
+            fileSystem = FileSystems.newFileSystem(URI.create("jrt:/"), Collections.emptyMap(), loader);
+        }
+        return fileSystem;
+    }
+
+    private static File getJrtFileSystemJar(File javaHome) {
+        return new File(javaHome, "lib" + File.separator + "jrt-fs.jar");
+    }
+
+    private static Map<String, List<String>> parseScope(Collection<String> scope) {
+        Set<String> modules = new HashSet<>();
+        Map<String, List<String>> result = new HashMap<>();
+        if (scope != null) {
+            for (String entry : scope) {
+                String[] parts = entry.trim().split("/", 2);
+                if (parts[0].isEmpty()) {
+                    throw new IllegalArgumentException("Invalid Java Class Library scope entry: " + entry);
+                }
+                List<String> packages = result.computeIfAbsent(parts[0], k -> new ArrayList<>());
+                if (parts.length == 1 || parts[1].isEmpty()) {
+                    modules.add(parts[0]);
+                } else {
+                    packages.add(parts[1].replace('.', '/') + "/");
+                }
+            }
+        }
+        // An empty list indicates that the entire module is included
+        modules.forEach(m -> result.put(m, Collections.emptyList()));
+        return result;
+    }
+
+    private static boolean matches(List<String> packages, String className) {
+        return packages.isEmpty() || packages.stream().anyMatch(className::startsWith);
+    }
+
+    interface ClassFileVisitor {
+        void visit(String className, byte[] buffer) throws IOException;
+    }
+}
@@ -0,0 +1,105 @@
+package edu.neu.ccs.prl.meringue;
+
+import org.jacoco.core.internal.data.CRC64;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Records the JaCoCo class id and total number of branches of each class in a module of the Java Class Library.
+ * Allows the total number of branches in the module to be computed without analyzing its classes.
+ * <p>
+ * Immutable.
+ */
+final class ModuleIndex {
+    private final List<Entry> entries;
+
+    private ModuleIndex(List<Entry> entries) {
+        this.entries = Collections.unmodifiableList(entries);
+    }
+
+    List<Entry> getEntries() {
+        return entries;
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeInt(entries.size());
+        for (Entry entry : entries) {
+            out.writeUTF(entry.className);
+            out.writeLong(entry.classId);
+            out.writeInt(entry.totalBranches);
+        }
+    }
+
+    static ModuleIndex read(DataInput in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            throw new IOException("Malformed module index");
+        }
+        List<Entry> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            entries.add(new Entry(in.readUTF(), in.readLong(), in.readInt()));
+        }
+        return new ModuleIndex(entries);
+    }
+
+    /**
+     * Creates an index for the specified module.
+     *
+     * @param library the Java Class Library containing the module
+     * @param module  the name of the module
+     * @param cache   cache used to store and retrieve the results of analyzing the classes of the module
+     * @return an index for the module
+     * @throws IOException if an I/O error occurs reading the classes of the module
+     */
+    static ModuleIndex create(JavaClassLibrary library, String module, ProbeIndexCache cache) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        library.visitClasses(module, (className, buffer) -> {
+            long classId = CRC64.classId(buffer);
+            ProbeIndex index = cache.get(classId, className);
+            if (index == null) {
+                try {
+                    index = ProbeIndex.create(buffer);
+                } catch (RuntimeException e) {
+                    // Suppress the exception so that other classes are still analyzed
+                    return;
+                }
+                if (index != null) {
+                    cache.put(classId, index);
+                }
+            }
+            if (index != null) {
+                entries.add(new Entry(className, classId, index.getTotalBranches()));
+            }
+        });
+        return new ModuleIndex(entries);
+    }
+
+    static final class Entry {
+        private final String className;
+        private final long classId;
+        private final int totalBranches;
+
+        private Entry(String className, long classId, int totalBranches) {
+            this.className = className;
+            this.classId = classId;
+            this.totalBranches = totalBranches;
+        }
+
+        String getClassName() {
+            return className;
+        }
+
+        long getClassId() {
+            return classId;
+        }
+
+        int getTotalBranches() {
+            return totalBranches;
+        }
+    }
+}
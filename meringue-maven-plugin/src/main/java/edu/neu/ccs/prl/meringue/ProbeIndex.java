@@ -0,0 +1,649 @@
+package edu.neu.ccs.prl.meringue;
+
+import org.jacoco.core.internal.analysis.filter.Filters;
+import org.jacoco.core.internal.analysis.filter.IFilter;
+import org.jacoco.core.internal.analysis.filter.IFilterContext;
+import org.jacoco.core.internal.analysis.filter.IFilterOutput;
+import org.jacoco.core.internal.flow.ClassProbesAdapter;
+import org.jacoco.core.internal.flow.ClassProbesVisitor;
+import org.jacoco.core.internal.flow.IFrame;
+import org.jacoco.core.internal.flow.LabelInfo;
+import org.jacoco.core.internal.flow.MethodProbesVisitor;
+import org.jacoco.core.internal.instr.InstrSupport;
+import org.objectweb.asm.*;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Maps each probe of a class to the branches of the class that are covered when that probe is executed. A branch is
+ * covered by a set of probes if any probe in the set was executed. Therefore, the number of branches covered by a
+ * probe array can be computed from this index without analyzing the bytecode of the class.
+ * <p>
+ * Indices are created by replaying JaCoCo's analysis of a class with sets of probes in place of the boolean execution
+ * status of each probe. Instructions, jumps, probes, and filters are handled in the same manner as in JaCoCo's
+ * {@code ClassAnalyzer}, {@code MethodAnalyzer}, {@code InstructionsBuilder}, and {@code MethodCoverageCalculator}.
+ * <p>
+ * Immutable.
+ */
+final class ProbeIndex {
+    private final String className;
+    private final int probeCount;
+    private final int totalBranches;
+    /**
+     * Branches covered by the probe {@code p} are stored in {@link #branches} from index {@code offsets[p]}
+     * (inclusive) to index {@code offsets[p + 1]} (exclusive).
+     */
+    private final int[] offsets;
+    private final int[] branches;
+
+    private ProbeIndex(String className, int probeCount, int totalBranches, List<BitSet> branchProbes) {
+        this.className = className;
+        this.probeCount = probeCount;
+        this.totalBranches = totalBranches;
+        this.offsets = new int[probeCount + 1];
+        for (BitSet probes : branchProbes) {
+            for (int p = probes.nextSetBit(0); p >= 0; p = probes.nextSetBit(p + 1)) {
+                offsets[p + 1]++;
+            }
+        }
+        for (int p = 0; p < probeCount; p++) {
+            offsets[p + 1] += offsets[p];
+        }
+        this.branches = new int[offsets[probeCount]];
+        int[] next = Arrays.copyOf(offsets, probeCount);
+        for (int branch = 0; branch < branchProbes.size(); branch++) {
+            BitSet probes = branchProbes.get(branch);
+            for (int p = probes.nextSetBit(0); p >= 0; p = probes.nextSetBit(p + 1)) {
+                branches[next[p]++] = branch;
+            }
+        }
+    }
+
+    private ProbeIndex(String className, int probeCount, int totalBranches, int[] offsets, int[] branches) {
+        this.className = className;
+        this.probeCount = probeCount;
+        this.totalBranches = totalBranches;
+        this.offsets = offsets;
+        this.branches = branches;
+    }
+
+    String getClassName() {
+        return className;
+    }
+
+    int getProbeCount() {
+        return probeCount;
+    }
+
+    int getTotalBranches() {
+        return totalBranches;
+    }
+
+    /**
+     * Marks the branches covered by the specified probe in the specified set of covered branches.
+     *
+     * @param probe   the index of the executed probe
+     * @param covered the set of branches that have already been covered
+     * @return the number of branches that were newly marked as covered
+     */
+    int cover(int probe, BitSet covered) {
+        int count = 0;
+        for (int i = offsets[probe]; i < offsets[probe + 1]; i++) {
+            if (!covered.get(branches[i])) {
+                covered.set(branches[i]);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of branches covered by the specified probes.
+     *
+     * @param probes the execution status of each probe of the class
+     * @return the number of branches covered by the specified probes
+     */
+    int calculate(boolean[] probes) {
+        BitSet covered = new BitSet();
+        int count = 0;
+        for (int p = 0; p < probes.length && p < probeCount; p++) {
+            if (probes[p]) {
+                count += cover(p, covered);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes this index to the specified output in the format read by {@link #read(DataInput)}.
+     *
+     * @param out the output to which this index should be written
+     * @throws IOException if an I/O error occurs
+     */
+    void write(DataOutput out) throws IOException {
+        out.writeUTF(className);
+        out.writeInt(probeCount);
+        out.writeInt(totalBranches);
+        for (int offset : offsets) {
+            out.writeInt(offset);
+        }
+        for (int branch : branches) {
+            out.writeInt(branch);
+        }
+    }
+
+    /**
+     * Reads an index from the specified input that was written by {@link #write(DataOutput)}.
+     *
+     * @param in the input from which the index should be read
+     * @return the index that was read
+     * @throws IOException if an I/O error occurs or the input is malformed
+     */
+    static ProbeIndex read(DataInput in) throws IOException {
+        String className = in.readUTF();
+        int probeCount = in.readInt();
+        int totalBranches = in.readInt();
+        if (probeCount < 0 || totalBranches < 0) {
+            throw new IOException("Malformed probe index for: " + className);
+        }
+        int[] offsets = new int[probeCount + 1];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = in.readInt();
+            if (offsets[i] < (i == 0 ? 0 : offsets[i - 1])) {
+                throw new IOException("Malformed probe index for: " + className);
+            }
+        }
+        int[] branches = new int[offsets[probeCount]];
+        for (int i = 0; i < branches.length; i++) {
+            branches[i] = in.readInt();
+            if (branches[i] < 0) {
+                throw new IOException("Malformed probe index for: " + className);
+            }
+        }
+        return new ProbeIndex(className, probeCount, totalBranches, offsets, branches);
+    }
+
+    /**
+     * Creates an index for the specified class file.
+     *
+     * @param buffer the class file
+     * @return an index for the class or {@code null} if the class is not analyzed by JaCoCo
+     * @throws IllegalArgumentException if the class file could not be read
+     */
+    static ProbeIndex create(byte[] buffer) {
+        ClassReader reader = InstrSupport.classReaderFor(buffer);
+        if ((reader.getAccess() & (Opcodes.ACC_MODULE | Opcodes.ACC_SYNTHETIC)) != 0) {
+            // JaCoCo does not analyze module descriptors or synthetic classes
+            return null;
+        }
+        IndexingVisitor visitor = new IndexingVisitor(reader.getClassName());
+        reader.accept(new ClassProbesAdapter(visitor, false), 0);
+        return new ProbeIndex(visitor.className, visitor.probeCount, visitor.totalBranches, visitor.branchProbes);
+    }
+
+    private static final class IndexingVisitor extends ClassProbesVisitor implements IFilterContext {
+        private final String className;
+        private final IFilter filter = Filters.all();
+        private final Set<String> classAnnotations = new HashSet<>();
+        private final Set<String> classAttributes = new HashSet<>();
+        private final List<BitSet> branchProbes = new ArrayList<>();
+        private String superClassName;
+        private String sourceFileName;
+        private String sourceDebugExtension;
+        private int probeCount;
+        private int totalBranches;
+
+        private IndexingVisitor(String className) {
+            this.className = className;
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName,
+                          String[] interfaces) {
+            this.superClassName = superName;
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+            classAnnotations.add(desc);
+            return super.visitAnnotation(desc, visible);
+        }
+
+        @Override
+        public void visitAttribute(Attribute attribute) {
+            classAttributes.add(attribute.type);
+        }
+
+        @Override
+        public void visitSource(String source, String debug) {
+            this.sourceFileName = source;
+            this.sourceDebugExtension = debug;
+        }
+
+        @Override
+        public MethodProbesVisitor visitMethod(int access, String name, String desc, String signature,
+                                               String[] exceptions) {
+            InstrSupport.assertNotInstrumented(name, className);
+            return new IndexingMethodVisitor(this);
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+            InstrSupport.assertNotInstrumented(name, className);
+            return super.visitField(access, name, desc, signature, value);
+        }
+
+        @Override
+        public void visitTotalProbeCount(int count) {
+            this.probeCount = count;
+        }
+
+        private void addMethod(Map<AbstractInsnNode, Node> instructions, MethodNode methodNode) {
+            BranchCalculator calculator = new BranchCalculator(instructions);
+            filter.filter(methodNode, this, calculator);
+            calculator.calculate(this);
+        }
+
+        @Override
+        public String getClassName() {
+            return className;
+        }
+
+        @Override
+        public String getSuperClassName() {
+            return superClassName;
+        }
+
+        @Override
+        public Set<String> getClassAnnotations() {
+            return classAnnotations;
+        }
+
+        @Override
+        public Set<String> getClassAttributes() {
+            return classAttributes;
+        }
+
+        @Override
+        public String getSourceFileName() {
+            return sourceFileName;
+        }
+
+        @Override
+        public String getSourceDebugExtension() {
+            return sourceDebugExtension;
+        }
+    }
+
+    /**
+     * Mirrors JaCoCo's {@code MethodAnalyzer} and {@code InstructionsBuilder}.
+     */
+    private static final class IndexingMethodVisitor extends MethodProbesVisitor {
+        private final IndexingVisitor owner;
+        private final Map<AbstractInsnNode, Node> instructions = new HashMap<>();
+        private final Map<Label, Node> labelInstructions = new HashMap<>();
+        private final List<Label> currentLabels = new ArrayList<>(2);
+        private final List<Jump> jumps = new ArrayList<>();
+        private AbstractInsnNode currentNode;
+        private Node currentInsn;
+
+        private IndexingMethodVisitor(IndexingVisitor owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public void accept(MethodNode methodNode, MethodVisitor methodVisitor) {
+            methodVisitor.visitCode();
+            for (TryCatchBlockNode n : methodNode.tryCatchBlocks) {
+                n.accept(methodVisitor);
+            }
+            for (AbstractInsnNode i : methodNode.instructions) {
+                currentNode = i;
+                i.accept(methodVisitor);
+            }
+            methodVisitor.visitEnd();
+            for (Jump jump : jumps) {
+                jump.source.addBranch(labelInstructions.get(jump.target), jump.branch);
+            }
+            owner.addMethod(instructions, methodNode);
+        }
+
+        @Override
+        public void visitLabel(Label label) {
+            currentLabels.add(label);
+            if (!LabelInfo.isSuccessor(label)) {
+                currentInsn = null;
+            }
+        }
+
+        @Override
+        public void visitInsn(int opcode) {
+            addInstruction();
+        }
+
+        @Override
+        public void visitIntInsn(int opcode, int operand) {
+            addInstruction();
+        }
+
+        @Override
+        public void visitVarInsn(int opcode, int var) {
+            addInstruction();
+        }
+
+        @Override
+        public void visitTypeInsn(int opcode, String type) {
+            addInstruction();
+        }
+
+        @Override
+        public void visitFieldInsn(int opcode, String owner, String name, String desc) {
+            addInstruction();
+        }
+
+        @Override
+        public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+            addInstruction();
+        }
+
+        @Override
+        public void visitInvokeDynamicInsn(String name, String desc, Handle bsm, Object... bsmArgs) {
+            addInstruction();
+        }
+
+        @Override
+        public void visitJumpInsn(int opcode, Label label) {
+            addInstruction();
+            jumps.add(new Jump(currentInsn, label, 1));
+        }
+
+        @Override
+        public void visitLdcInsn(Object cst) {
+            addInstruction();
+        }
+
+        @Override
+        public void visitIincInsn(int var, int increment) {
+            addInstruction();
+        }
+
+        @Override
+        public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+            visitSwitchInsn(dflt, labels);
+        }
+
+        @Override
+        public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+            visitSwitchInsn(dflt, labels);
+        }
+
+        private void visitSwitchInsn(Label dflt, Label[] labels) {
+            addInstruction();
+            LabelInfo.resetDone(labels);
+            int branch = 0;
+            jumps.add(new Jump(currentInsn, dflt, branch));
+            LabelInfo.setDone(dflt);
+            for (Label l : labels) {
+                if (!LabelInfo.isDone(l)) {
+                    branch++;
+                    jumps.add(new Jump(currentInsn, l, branch));
+                    LabelInfo.setDone(l);
+                }
+            }
+        }
+
+        @Override
+        public void visitMultiANewArrayInsn(String desc, int dims) {
+            addInstruction();
+        }
+
+        @Override
+        public void visitProbe(int probeId) {
+            currentInsn.addProbe(probeId, 0);
+            currentInsn = null;
+        }
+
+        @Override
+        public void visitJumpInsnWithProbe(int opcode, Label label, int probeId, IFrame frame) {
+            addInstruction();
+            currentInsn.addProbe(probeId, 1);
+        }
+
+        @Override
+        public void visitInsnWithProbe(int opcode, int probeId) {
+            addInstruction();
+            currentInsn.addProbe(probeId, 0);
+        }
+
+        @Override
+        public void visitTableSwitchInsnWithProbes(int min, int max, Label dflt, Label[] labels, IFrame frame) {
+            visitSwitchInsnWithProbes(dflt, labels);
+        }
+
+        @Override
+        public void visitLookupSwitchInsnWithProbes(Label dflt, int[] keys, Label[] labels, IFrame frame) {
+            visitSwitchInsnWithProbes(dflt, labels);
+        }
+
+        private void visitSwitchInsnWithProbes(Label dflt, Label[] labels) {
+            addInstruction();
+            LabelInfo.resetDone(dflt);
+            LabelInfo.resetDone(labels);
+            int branch = 0;
+            visitSwitchTarget(dflt, branch);
+            for (Label l : labels) {
+                branch++;
+                visitSwitchTarget(l, branch);
+            }
+        }
+
+        private void visitSwitchTarget(Label label, int branch) {
+            int id = LabelInfo.getProbeId(label);
+            if (!LabelInfo.isDone(label)) {
+                if (id == LabelInfo.NO_PROBE) {
+                    jumps.add(new Jump(currentInsn, label, branch));
+                } else {
+                    currentInsn.addProbe(id, branch);
+                }
+                LabelInfo.setDone(label);
+            }
+        }
+
+        private void addInstruction() {
+            Node insn = new Node();
+            for (Label label : currentLabels) {
+                labelInstructions.put(label, insn);
+            }
+            currentLabels.clear();
+            if (currentInsn != null) {
+                currentInsn.addBranch(insn, 0);
+            }
+            currentInsn = insn;
+            instructions.put(currentNode, insn);
+        }
+    }
+
+    private static final class Jump {
+        private final Node source;
+        private final Label target;
+        private final int branch;
+
+        private Jump(Node source, Label target, int branch) {
+            this.source = source;
+            this.target = target;
+            this.branch = branch;
+        }
+    }
+
+    /**
+     * Mirrors JaCoCo's {@code Instruction}. Instead of recording which branches of the instruction are covered, records
+     * for each branch the set of probes that cover it.
+     */
+    private static final class Node {
+        private final List<BitSet> branchProbes = new ArrayList<>(2);
+        /**
+         * Union of {@link #branchProbes}, the set of probes that cover this instruction.
+         */
+        private final BitSet probes = new BitSet();
+        private int branches;
+        private Node predecessor;
+        private int predecessorBranch;
+
+        private void addBranch(Node target, int branch) {
+            branches++;
+            target.predecessor = this;
+            target.predecessorBranch = branch;
+            if (!target.probes.isEmpty()) {
+                propagate(this, branch, (BitSet) target.probes.clone());
+            }
+        }
+
+        private void addProbe(int probeId, int branch) {
+            branches++;
+            BitSet probeSet = new BitSet();
+            probeSet.set(probeId);
+            propagate(this, branch, probeSet);
+        }
+
+        private BitSet getBranchProbes(int branch) {
+            while (branchProbes.size() <= branch) {
+                branchProbes.add(new BitSet());
+            }
+            return branchProbes.get(branch);
+        }
+
+        private Node merge(Node other) {
+            Node result = new Node();
+            result.branches = branches;
+            result.probes.or(probes);
+            result.probes.or(other.probes);
+            for (int i = 0; i < branchProbes.size(); i++) {
+                result.getBranchProbes(i).or(branchProbes.get(i));
+            }
+            for (int i = 0; i < other.branchProbes.size(); i++) {
+                result.getBranchProbes(i).or(other.branchProbes.get(i));
+            }
+            return result;
+        }
+
+        private Node replaceBranches(Collection<Node> newBranches) {
+            Node result = new Node();
+            result.branches = newBranches.size();
+            int i = 0;
+            for (Node b : newBranches) {
+                result.getBranchProbes(i++).or(b.probes);
+                result.probes.or(b.probes);
+            }
+            return result;
+        }
+
+        /**
+         * For each probe in the specified set, propagates the coverage of the specified branch to the specified
+         * instruction and its predecessors in the same manner as JaCoCo would if that probe was the only executed
+         * probe.
+         */
+        private static void propagate(Node insn, int branch, BitSet probes) {
+            while (insn != null && !probes.isEmpty()) {
+                insn.getBranchProbes(branch).or(probes);
+                // Propagation stops for probes that already covered this instruction
+                BitSet continuing = (BitSet) probes.clone();
+                continuing.andNot(insn.probes);
+                insn.probes.or(probes);
+                probes = continuing;
+                branch = insn.predecessorBranch;
+                insn = insn.predecessor;
+            }
+        }
+    }
+
+    /**
+     * Mirrors JaCoCo's {@code MethodCoverageCalculator}.
+     */
+    private static final class BranchCalculator implements IFilterOutput {
+        private final Map<AbstractInsnNode, Node> instructions;
+        private final Set<AbstractInsnNode> ignored = new HashSet<>();
+        private final Map<AbstractInsnNode, AbstractInsnNode> merged = new HashMap<>();
+        private final Map<AbstractInsnNode, Set<AbstractInsnNode>> replacements = new HashMap<>();
+
+        private BranchCalculator(Map<AbstractInsnNode, Node> instructions) {
+            this.instructions = instructions;
+        }
+
+        private void calculate(IndexingVisitor visitor) {
+            applyMerges();
+            applyReplacements();
+            for (Map.Entry<AbstractInsnNode, Node> entry : instructions.entrySet()) {
+                Node insn = entry.getValue();
+                // Only instructions with at least two outgoing edges have branches
+                if (!ignored.contains(entry.getKey()) && insn.branches >= 2) {
+                    visitor.totalBranches += insn.branches;
+                    for (BitSet probes : insn.branchProbes) {
+                        if (!probes.isEmpty()) {
+                            visitor.branchProbes.add(probes);
+                        }
+                    }
+                }
+            }
+        }
+
+        private void applyMerges() {
+            for (Map.Entry<AbstractInsnNode, AbstractInsnNode> entry : merged.entrySet()) {
+                AbstractInsnNode node = entry.getKey();
+                AbstractInsnNode representative = findRepresentative(node);
+                ignored.add(node);
+                instructions.put(representative, instructions.get(representative).merge(instructions.get(node)));
+                entry.setValue(representative);
+            }
+            for (Map.Entry<AbstractInsnNode, AbstractInsnNode> entry : merged.entrySet()) {
+                instructions.put(entry.getKey(), instructions.get(entry.getValue()));
+            }
+        }
+
+        private void applyReplacements() {
+            for (Map.Entry<AbstractInsnNode, Set<AbstractInsnNode>> entry : replacements.entrySet()) {
+                List<Node> newBranches = new ArrayList<>(entry.getValue().size());
+                for (AbstractInsnNode b : entry.getValue()) {
+                    newBranches.add(instructions.get(b));
+                }
+                AbstractInsnNode node = entry.getKey();
+                instructions.put(node, instructions.get(node).replaceBranches(newBranches));
+            }
+        }
+
+        private AbstractInsnNode findRepresentative(AbstractInsnNode i) {
+            AbstractInsnNode r;
+            while ((r = merged.get(i)) != null) {
+                i = r;
+            }
+            return i;
+        }
+
+        @Override
+        public void ignore(AbstractInsnNode fromInclusive, AbstractInsnNode toInclusive) {
+            for (AbstractInsnNode i = fromInclusive; i != toInclusive; i = i.getNext()) {
+                ignored.add(i);
+            }
+            ignored.add(toInclusive);
+        }
+
+        @Override
+        public void merge(AbstractInsnNode i1, AbstractInsnNode i2) {
+            i1 = findRepresentative(i1);
+            i2 = findRepresentative(i2);
+            if (i1 != i2) {
+                merged.put(i2, i1);
+            }
+        }
+
+        @Override
+        public void replaceBranches(AbstractInsnNode source, Set<AbstractInsnNode> newTargets) {
+            replacements.put(source, newTargets);
+        }
+    }
+}
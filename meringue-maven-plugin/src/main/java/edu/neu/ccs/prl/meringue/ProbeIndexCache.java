@@ -0,0 +1,126 @@
+package edu.neu.ccs.prl.meringue;
+
+import org.jacoco.core.JaCoCo;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Persistent store of {@link ProbeIndex ProbeIndices} keyed by JaCoCo class id and {@link ModuleIndex ModuleIndices}
+ * keyed by Java installation and module name. Each index is stored in its own file, so a single cache directory can be
+ * shared by concurrent analyses. Entries are written to a temporary file that is then atomically moved into place;
+ * readers never observe a partially written entry. Failures to read or write an entry are ignored and simply cause
+ * the entry to be computed again.
+ * <p>
+ * Thread-safe.
+ */
+final class ProbeIndexCache {
+    /**
+     * Version of the format and computation of cached indices. Must be incremented whenever either changes.
+     */
+    private static final int FORMAT_VERSION = 1;
+    private final File directory;
+
+    ProbeIndexCache(File directory) {
+        if (directory == null) {
+            throw new NullPointerException();
+        }
+        // Filters applied by the index depend on the version of JaCoCo
+        this.directory = new File(directory, String.format("probe-index-%d-jacoco-%s", FORMAT_VERSION, JaCoCo.VERSION));
+    }
+
+    /**
+     * Returns the cached index for the class with the specified id.
+     *
+     * @param classId   the JaCoCo class id of the class
+     * @param className the internal name of the class
+     * @return the cached index for the class or {@code null} if there is no valid entry for the class
+     */
+    ProbeIndex get(long classId, String className) {
+        ProbeIndex index = read(getFile(classId), ProbeIndex::read);
+        // Guard against collisions and entries that are somehow corrupted
+        return index != null && className.equals(index.getClassName()) ? index : null;
+    }
+
+    /**
+     * Stores the specified index as the entry for the class with the specified id.
+     *
+     * @param classId the JaCoCo class id of the class
+     * @param index   the index for the class
+     */
+    void put(long classId, ProbeIndex index) {
+        write(getFile(classId), index::write);
+    }
+
+    /**
+     * Returns the cached index for the specified module of the Java Class Library.
+     *
+     * @param library the Java Class Library containing the module
+     * @param module  the name of the module
+     * @return the cached index for the module or {@code null} if there is no valid entry for the module
+     * @throws IOException if an I/O error occurs identifying the Java Class Library
+     */
+    ModuleIndex getModuleIndex(JavaClassLibrary library, String module) throws IOException {
+        return read(getModuleFile(library, module), ModuleIndex::read);
+    }
+
+    /**
+     * Stores the specified index as the entry for the specified module of the Java Class Library.
+     *
+     * @param library the Java Class Library containing the module
+     * @param module  the name of the module
+     * @param index   the index for the module
+     * @throws IOException if an I/O error occurs identifying the Java Class Library
+     */
+    void putModuleIndex(JavaClassLibrary library, String module, ModuleIndex index) throws IOException {
+        write(getModuleFile(library, module), index::write);
+    }
+
+    private File getModuleFile(JavaClassLibrary library, String module) throws IOException {
+        return new File(new File(new File(directory, "jcl"), library.getKey()), module);
+    }
+
+    private File getFile(long classId) {
+        String name = String.format("%016x", classId);
+        return new File(new File(directory, name.substring(0, 2)), name);
+    }
+
+    private static <T> T read(File file, EntryReader<T> reader) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            return reader.read(in);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void write(File file, EntryWriter writer) {
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+            File temp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+            try {
+                try (DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(temp)))) {
+                    writer.write(out);
+                }
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                           StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp.toPath());
+            }
+        } catch (IOException e) {
+            // The entry is not essential; it will be computed again next time
+        }
+    }
+
+    private interface EntryReader<T> {
+        T read(DataInput in) throws IOException;
+    }
+
+    private interface EntryWriter {
+        void write(DataOutput out) throws IOException;
+    }
+}
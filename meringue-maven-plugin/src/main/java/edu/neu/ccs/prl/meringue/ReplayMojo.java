@@ -19,9 +19,21 @@ public class ReplayMojo extends AbstractMeringueMojo implements CampaignValues {
      */
     @Parameter(property = "meringue.input", required = true)
     private File input;
+    /**
+     * Amount of time in milliseconds that the replay of the input must take before a Java Flight Recorder recording of
+     * the remainder of its replay is captured or -1 if the input should not be recorded. Recordings are written to the
+     * directory "recordings" in the output directory. By default, the input is not recorded.
+     */
+    @Parameter(property = "meringue.recordingThreshold", defaultValue = "-1")
+    private long recordingThreshold;
 
     @Override
     public void execute() throws MojoExecutionException {
         new ReplayRunner(this, input).run();
     }
+
+    @Override
+    public long getRecordingThreshold() {
+        return recordingThreshold;
+    }
 }
\ No newline at end of file
@@ -25,9 +25,15 @@ public class ReplayRunner {
         try {
             values.initialize();
             values.getLog().info("Replaying input: " + input);
+            File recording = SlowInputRecorder.getRecordingFile(values.getRecordingDirectory(), input);
+            // Keep any recording of a previous replay of the input; it is only replaced if this replay is recorded
+            long previous = recording.lastModified();
             if (ProcessUtil.waitFor(createReplayLauncher().launch()) != 0) {
                 throw new MojoExecutionException("Replay process terminated unexpectedly");
             }
+            if (recording.isFile() && recording.lastModified() != previous) {
+                values.getLog().info("Flight recording written to: " + recording);
+            }
         } catch (IOException | InterruptedException | ReflectiveOperationException e) {
             throw new MojoExecutionException("Failed to execute fuzzing replay", e);
         }
@@ -46,6 +52,7 @@ public class ReplayRunner {
                 createReplayFrameworkJar(framework)
         ));
         options.addAll(framework.getAnalysisJavaOptions());
+        options.addAll(values.createRecordingOptions());
         String[] arguments = new String[]{
                 configuration.getTestClassName(),
                 configuration.getTestMethodName(),
@@ -0,0 +1,506 @@
+package edu.neu.ccs.prl.meringue;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.SessionInfoStore;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.*;
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Persistent store of the results of replaying inputs keyed by the SHA-256 hash of the contents of the input. Only
+ * results of completed replays are stored. For inputs that caused the analysis JVM to fail, only the fact that they did
+ * is recorded, so that later analyses can predict which inputs are likely to fail again.
+ * <p>
+ * Each entry records the fingerprint of the analysis JVM that produced it, so entries produced with a different
+ * Java installation, command, or classpath are ignored. However, the class files of the classes included in coverage
+ * are not part of the fingerprint. Instead, each entry records the JaCoCo class ids of the included classes
+ * executed by its input. Since class ids are computed from the bytecode of the class, an entry is only valid if all of
+ * these ids are still ids of included classes. So, when the target is rebuilt, only the entries of inputs that
+ * executed a changed class are invalidated.
+ * <p>
+ * Like {@link ProbeIndexCache}, each entry is stored in its own file that is written to a temporary file and then
+ * atomically moved into place. Failures to read or write an entry are ignored and simply cause the input to be
+ * replayed again.
+ * <p>
+ * Thread-safe.
+ */
+final class ResultCache {
+    /**
+     * Version of the format of cached results. Must be incremented whenever the format changes.
+     */
+    private static final int FORMAT_VERSION = 3;
+    private static final String JAVA_AGENT_PREFIX = "-javaagent:";
+    private final File directory;
+    private final String fingerprint;
+    /**
+     * Tests whether a JaCoCo class id is the id of a current class included in coverage.
+     */
+    private final LongPredicate includedClasses;
+
+    ResultCache(File directory, String fingerprint, LongPredicate includedClasses) {
+        if (directory == null || fingerprint == null || includedClasses == null) {
+            throw new NullPointerException();
+        }
+        this.directory = new File(directory, "results-" + FORMAT_VERSION);
+        this.fingerprint = fingerprint;
+        this.includedClasses = includedClasses;
+    }
+
+    /**
+     * Returns whether there is a valid entry for the input with the specified key.
+     *
+     * @param key the key of the input's contents
+     * @return true if there is a valid entry for the input with the specified key
+     */
+    boolean contains(String key) {
+        File file = getFile(key);
+        if (!file.isFile()) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            return isValid(in);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the cached result for the input with the specified key.
+     *
+     * @param key       the key of the input's contents
+     * @param inputFile the input
+     * @return the cached result for the input or {@code null} if there is no valid entry for the input
+     */
+    AnalysisResult get(String key, File inputFile) {
+        File file = getFile(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (!isValid(in)) {
+                return null;
+            }
+            Duration executionTime = Duration.ofNanos(in.readLong());
+            long cpuTime = in.readLong();
+            long allocatedBytes = in.readLong();
+            byte[] execData = new byte[in.readInt()];
+            in.readFully(execData);
+            Failure failure = null;
+            String failureMessage = null;
+            if (in.readBoolean()) {
+                failure = readFailure(in);
+                failureMessage = in.readBoolean() ? readString(in) : null;
+            }
+            ExecutionDataStore store = new ExecutionDataStore();
+            SessionInfoStore sessions = new SessionInfoStore();
+            CoverageAccumulator.read(execData, store, sessions);
+            return new AnalysisResult(inputFile, store, sessions, failure, failureMessage, executionTime,
+                                      cpuTime < 0 ? null : Duration.ofNanos(cpuTime), allocatedBytes);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Stores the specified result as the entry for the input with the specified key. The execution data of the result
+     * must include all probes covered by the input.
+     *
+     * @param key    the key of the input's contents
+     * @param result the completed result of replaying the input
+     * @throws IllegalArgumentException if the replay of the input did not complete
+     */
+    void put(String key, AnalysisResult result) {
+        if (!result.isCompleted()) {
+            throw new IllegalArgumentException();
+        }
+        File file = getFile(key);
+        try {
+            ByteArrayOutputStream execData = new ByteArrayOutputStream();
+            ExecutionDataWriter writer = new ExecutionDataWriter(execData);
+            result.getSessionInfos().accept(writer);
+            result.getExecutionData().accept(writer);
+            Files.createDirectories(file.getParentFile().toPath());
+            File temp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+            try {
+                try (DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(temp)))) {
+                    out.writeUTF(fingerprint);
+                    long[] classIds = result.getExecutionData().getContents().stream()
+                                            .mapToLong(ExecutionData::getId)
+                                            .filter(includedClasses)
+                                            .toArray();
+                    out.writeInt(classIds.length);
+                    for (long classId : classIds) {
+                        out.writeLong(classId);
+                    }
+                    out.writeLong(result.getExecutionTime().toNanos());
+                    out.writeLong(result.getCpuTime() == null ? -1 : result.getCpuTime().toNanos());
+                    out.writeLong(result.getAllocatedBytes());
+                    out.writeInt(execData.size());
+                    execData.writeTo(out);
+                    out.writeBoolean(result.getFailure() != null);
+                    if (result.getFailure() != null) {
+                        writeFailure(out, result.getFailure());
+                        out.writeBoolean(result.getFailureMessage() != null);
+                        if (result.getFailureMessage() != null) {
+                            writeString(out, result.getFailureMessage());
+                        }
+                    }
+                }
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                           StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp.toPath());
+            }
+            // The input no longer causes the analysis JVM to fail
+            Files.deleteIfExists(getCrashFile(key).toPath());
+        } catch (IOException e) {
+            // The entry is not essential; the input will be replayed again next time
+        }
+    }
+
+    /**
+     * Records that the analysis JVM failed while replaying the input with the specified key. The record is removed
+     * once a completed result is stored for the input.
+     *
+     * @param key the key of the input's contents
+     */
+    void putCrash(String key) {
+        File file = getCrashFile(key);
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+            File temp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+            try {
+                try (DataOutputStream out = new DataOutputStream(new FileOutputStream(temp))) {
+                    out.writeUTF(fingerprint);
+                }
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                           StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp.toPath());
+            }
+        } catch (IOException e) {
+            // The record is not essential
+        }
+    }
+
+    /**
+     * Returns whether an analysis JVM with the same fingerprint previously failed while replaying the input with the
+     * specified key.
+     *
+     * @param key the key of the input's contents
+     * @return true if an analysis JVM previously failed while replaying the input with the specified key
+     */
+    boolean isKnownCrash(String key) {
+        File file = getCrashFile(key);
+        if (!file.isFile()) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return fingerprint.equals(in.readUTF());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads the header of an entry and checks whether the entry is valid.
+     */
+    private boolean isValid(DataInput in) throws IOException {
+        if (!fingerprint.equals(in.readUTF())) {
+            return false;
+        }
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            if (!includedClasses.test(in.readLong())) {
+                // The input executed a class that has changed
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private File getFile(String key) {
+        return new File(new File(directory, key.substring(0, 2)), key);
+    }
+
+    private File getCrashFile(String key) {
+        return new File(new File(directory, key.substring(0, 2)), key + ".crash");
+    }
+
+    /**
+     * Computes the key for the contents of the specified input.
+     *
+     * @param inputFile the input
+     * @return the hexadecimal SHA-256 hash of the contents of the input
+     * @throws IOException if an I/O error occurs reading the input
+     */
+    static String computeKey(File inputFile) throws IOException {
+        MessageDigest digest = createDigest();
+        byte[] buffer = new byte[8192];
+        try (InputStream in = new FileInputStream(inputFile)) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Computes a fingerprint of the analysis JVMs created by the specified launcher. The fingerprint covers the
+     * command used to launch the JVM, its working directory and environment, and the path, size, and last
+     * modification time of the Java executable and each file on the classpath of the JVM. Classpath elements that are
+     * JAR files containing only a manifest are replaced by the elements listed in their manifest, so that regenerating
+     * such a JAR file does not change the fingerprint. Java agents are handled likewise: an agent JAR file containing
+     * only a manifest is replaced by the elements listed in its manifest, and an options file passed to such an agent
+     * is replaced by its contents and the files whose absolute paths it lists. So regenerating an agent in a different
+     * temporary directory does not change the fingerprint. For the specified measured classpath elements, class files
+     * of classes included in coverage are not part of the fingerprint, since changes to them are detected by their
+     * class ids; all other files are part of the fingerprint.
+     *
+     * @param launcher        the launcher used to create analysis JVMs
+     * @param measured        the classpath elements containing classes included in coverage
+     * @param includedClasses tests whether the class with the specified name in the internal form used by the JVM is
+     *                        included in coverage
+     * @return the fingerprint for the analysis JVMs created by the launcher
+     * @throws IOException if an I/O error occurs reading the classpath
+     */
+    static String computeFingerprint(JvmLauncher launcher, Collection<File> measured,
+                                     Predicate<String> includedClasses) throws IOException {
+        Set<File> measuredElements = measured.stream().map(File::getAbsoluteFile).collect(Collectors.toSet());
+        List<String> parts = new ArrayList<>();
+        String[] command = launcher.createCommand();
+        for (int i = 0; i < command.length; i++) {
+            if (i > 0 && (command[i - 1].equals("-cp") || command[i - 1].equals("-classpath"))) {
+                Set<File> visited = new HashSet<>();
+                for (String element : command[i].split(File.pathSeparator)) {
+                    stampClassPathElement(new File(element), measuredElements, includedClasses, visited,
+                                          parts);
+                }
+            } else if (command[i].startsWith(JAVA_AGENT_PREFIX)) {
+                stampJavaAgent(command[i], measuredElements, includedClasses, parts);
+            } else {
+                parts.add(command[i]);
+            }
+        }
+        parts.add(stamp(launcher.getJavaExec()));
+        parts.add(String.valueOf(launcher.getWorkingDir()));
+        if (launcher.getEnvironment() != null) {
+            parts.add(new TreeMap<>(launcher.getEnvironment()).toString());
+        }
+        MessageDigest digest = createDigest();
+        for (String part : parts) {
+            digest.update(part.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return toHex(digest.digest());
+    }
+
+    private static void stampJavaAgent(String option, Set<File> measuredElements, Predicate<String> includedClasses,
+                                       List<String> parts) throws IOException {
+        String value = option.substring(JAVA_AGENT_PREFIX.length());
+        int separator = value.indexOf('=');
+        File jar = new File(separator == -1 ? value : value.substring(0, separator));
+        List<File> manifestElements = new ArrayList<>();
+        if (!readManifestClassPath(jar, manifestElements)) {
+            parts.add(option);
+            return;
+        }
+        parts.add(JAVA_AGENT_PREFIX);
+        Set<File> visited = new HashSet<>();
+        for (File manifestElement : manifestElements) {
+            stampClassPathElement(manifestElement, measuredElements, includedClasses, visited, parts);
+        }
+        if (separator == -1) {
+            return;
+        }
+        String options = value.substring(separator + 1);
+        File optionsFile = new File(options);
+        if (!optionsFile.isFile()) {
+            parts.add("=" + options);
+            return;
+        }
+        MessageDigest digest = createDigest();
+        digest.update(Files.readAllBytes(optionsFile.toPath()));
+        parts.add("=" + toHex(digest.digest()));
+        for (String line : Files.readAllLines(optionsFile.toPath(), StandardCharsets.UTF_8)) {
+            for (String entry : line.split(File.pathSeparator)) {
+                File file = new File(entry);
+                if (file.isAbsolute() && file.exists()) {
+                    stampClassPathElement(file, measuredElements, includedClasses, visited, parts);
+                }
+            }
+        }
+    }
+
+    private static void stampClassPathElement(File path, Set<File> measuredElements,
+                                              Predicate<String> includedClasses, Set<File> visited,
+                                              List<String> parts) throws IOException {
+        File element = path.getAbsoluteFile();
+        if (!visited.add(element)) {
+            return;
+        }
+        boolean measured = measuredElements.contains(element);
+        if (element.isDirectory()) {
+            parts.add(element.getPath());
+            Path root = element.toPath();
+            try (Stream<Path> s = Files.walk(root)) {
+                List<Path> files = s.filter(Files::isRegularFile)
+                                    .filter(f -> !measured || !isIncludedClassFile(root.relativize(f), includedClasses))
+                                    .sorted()
+                                    .collect(Collectors.toList());
+                for (Path file : files) {
+                    parts.add(root.relativize(file) + ":" + file.toFile().length() + ":" +
+                                      file.toFile().lastModified());
+                }
+            }
+        } else if (element.isFile() && measured) {
+            parts.add(element.getPath());
+            try (JarFile jar = new JarFile(element)) {
+                for (Enumeration<JarEntry> e = jar.entries(); e.hasMoreElements(); ) {
+                    JarEntry entry = e.nextElement();
+                    if (!isIncludedClassFile(entry.getName(), includedClasses)) {
+                        parts.add(entry.getName() + ":" + entry.getCrc());
+                    }
+                }
+            }
+        } else if (element.isFile()) {
+            List<File> manifestElements = new ArrayList<>();
+            boolean manifestOnly = readManifestClassPath(element, manifestElements);
+            if (!manifestOnly) {
+                parts.add(stamp(element));
+            }
+            for (File manifestElement : manifestElements) {
+                stampClassPathElement(manifestElement, measuredElements, includedClasses, visited, parts);
+            }
+        } else {
+            parts.add(element.getPath() + ":missing");
+        }
+    }
+
+    private static boolean isIncludedClassFile(Path relativePath, Predicate<String> includedClasses) {
+        return isIncludedClassFile(relativePath.toString().replace(File.separatorChar, '/'), includedClasses);
+    }
+
+    /**
+     * Returns whether the specified entry of a classpath element is the class file of a class included in coverage.
+     * Changes to such class files are detected by their class ids, so they are not part of the fingerprint.
+     *
+     * @param name            the path of the entry relative to the root of the classpath element using '/' as the
+     *                        separator
+     * @param includedClasses tests whether the class with the specified name is included in coverage
+     */
+    private static boolean isIncludedClassFile(String name, Predicate<String> includedClasses) {
+        return name.endsWith(".class") && includedClasses.test(name.substring(0, name.length() - ".class".length()));
+    }
+
+    /**
+     * Adds the classpath elements listed in the manifest of the specified JAR file to the specified list.
+     *
+     * @return true if the JAR file contains only a manifest that lists classpath elements
+     */
+    private static boolean readManifestClassPath(File jar, List<File> elements) {
+        try (JarFile file = new JarFile(jar)) {
+            Manifest manifest = file.getManifest();
+            if (manifest == null || manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH) == null) {
+                return false;
+            }
+            String classPath = manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
+            if (classPath.trim().isEmpty()) {
+                return false;
+            }
+            for (String entry : classPath.trim().split("\\s+")) {
+                File element = new File(entry);
+                elements.add(element.isAbsolute() ? element : new File(jar.getParentFile(), entry));
+            }
+            for (Enumeration<JarEntry> e = file.entries(); e.hasMoreElements(); ) {
+                JarEntry entry = e.nextElement();
+                if (!entry.isDirectory() && !entry.getName().equalsIgnoreCase(JarFile.MANIFEST_NAME)) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            // Not a JAR file
+            return false;
+        }
+    }
+
+    private static String stamp(File file) {
+        return file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified();
+    }
+
+    private static Failure readFailure(DataInput in) throws IOException {
+        String type = in.readUTF();
+        StackTraceElement[] trace = new StackTraceElement[in.readInt()];
+        for (int i = 0; i < trace.length; i++) {
+            String className = in.readUTF();
+            String methodName = in.readUTF();
+            String fileName = in.readBoolean() ? in.readUTF() : null;
+            trace[i] = new StackTraceElement(className, methodName, fileName, in.readInt());
+        }
+        return new Failure(type, trace);
+    }
+
+    private static void writeFailure(DataOutput out, Failure failure) throws IOException {
+        out.writeUTF(failure.getType());
+        out.writeInt(failure.getTrace().size());
+        for (StackTraceElement element : failure.getTrace()) {
+            out.writeUTF(element.getClassName());
+            out.writeUTF(element.getMethodName());
+            out.writeBoolean(element.getFileName() != null);
+            if (element.getFileName() != null) {
+                out.writeUTF(element.getFileName());
+            }
+            out.writeInt(element.getLineNumber());
+        }
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        // Failure messages may exceed the length supported by DataOutput#writeUTF
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every implementation of the Java platform is required to support SHA-256
+            throw new AssertionError(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(String.format("%02x", b));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,122 @@
+package edu.neu.ccs.prl.meringue;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.security.ProtectionDomain;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Instruments classes so that their static state can be reset by the {@link StaticStateRegistry}. Loaded by the
+ * {@link StaticResetAgent} in a separate class loader, so this class may only depend on ASM and the Java Class
+ * Library; classes of the registry are referenced by name.
+ * <p>
+ * Interfaces, enums, annotations, and classes compiled for Java versions prior to Java 5 are not instrumented.
+ * Enum constants and interface fields cannot be recreated without breaking the identity of their values.
+ */
+public final class StaticStateTransformer implements ClassFileTransformer {
+    private static final String REGISTRY_NAME = "edu/neu/ccs/prl/meringue/StaticStateRegistry";
+    private static final int SKIPPED_ACCESS =
+            Opcodes.ACC_INTERFACE | Opcodes.ACC_ENUM | Opcodes.ACC_ANNOTATION | Opcodes.ACC_MODULE;
+    private final Set<String> classNames;
+
+    /**
+     * @param classNames names of the classes to be instrumented in the internal form used by the JVM
+     */
+    public StaticStateTransformer(Set<String> classNames) {
+        this.classNames = Collections.unmodifiableSet(new HashSet<>(classNames));
+    }
+
+    @Override
+    public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined,
+                            ProtectionDomain protectionDomain, byte[] classFileBuffer) {
+        if (loader == null || className == null || classBeingRedefined != null || !classNames.contains(className)) {
+            return null;
+        }
+        try {
+            ClassReader reader = new ClassReader(classFileBuffer);
+            if ((reader.getAccess() & SKIPPED_ACCESS) != 0 || reader.readUnsignedShort(6) < Opcodes.V1_5) {
+                return null;
+            }
+            ClassWriter writer = new ClassWriter(reader, 0);
+            StaticStateVisitor visitor = new StaticStateVisitor(writer);
+            reader.accept(visitor, 0);
+            return visitor.modified ? writer.toByteArray() : null;
+        } catch (RuntimeException e) {
+            // Leave the class unchanged
+            return null;
+        }
+    }
+
+    private static final class StaticStateVisitor extends ClassVisitor {
+        private String className;
+        private boolean hasInitializer;
+        private boolean hasMutableField;
+        private boolean modified;
+
+        private StaticStateVisitor(ClassVisitor cv) {
+            super(Opcodes.ASM9, cv);
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName,
+                          String[] interfaces) {
+            this.className = name;
+            super.visit(version, access, name, signature, superName, interfaces);
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+            boolean isStatic = (access & Opcodes.ACC_STATIC) != 0;
+            boolean isFinal = (access & Opcodes.ACC_FINAL) != 0;
+            if (isStatic && isFinal && value == null) {
+                // Allow the field to be assigned when the static initializer is rerun outside of <clinit>
+                access &= ~Opcodes.ACC_FINAL;
+                isFinal = false;
+            }
+            if (isStatic && !isFinal && (access & Opcodes.ACC_SYNTHETIC) == 0) {
+                hasMutableField = true;
+            }
+            return super.visitField(access, name, descriptor, signature, value);
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature,
+                                         String[] exceptions) {
+            if (name.equals("<clinit>")) {
+                hasInitializer = true;
+                int newAccess = Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_SYNTHETIC;
+                return super.visitMethod(newAccess, StaticStateRegistry.INITIALIZER_NAME, descriptor, null, null);
+            }
+            return super.visitMethod(access, name, descriptor, signature, exceptions);
+        }
+
+        @Override
+        public void visitEnd() {
+            if (hasInitializer || hasMutableField) {
+                modified = true;
+                MethodVisitor mv = super.visitMethod(Opcodes.ACC_STATIC, "<clinit>", "()V", null, null);
+                mv.visitCode();
+                if (hasInitializer) {
+                    mv.visitMethodInsn(Opcodes.INVOKESTATIC, className, StaticStateRegistry.INITIALIZER_NAME, "()V",
+                                       false);
+                }
+                // Register the class once its original initializer completes
+                mv.visitLdcInsn(Type.getObjectType(className));
+                mv.visitMethodInsn(Opcodes.INVOKESTATIC, REGISTRY_NAME, "register", "(Ljava/lang/Class;)V", false);
+                mv.visitInsn(Opcodes.RETURN);
+                mv.visitMaxs(1, 0);
+                mv.visitEnd();
+            }
+            super.visitEnd();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package edu.neu.ccs.prl.meringue.report;
+
+import edu.neu.ccs.prl.meringue.CoverageAccumulator;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.SessionInfoStore;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Snapshot of the state of the reports of an analysis after some prefix of the inputs has been processed. Restoring a
+ * snapshot and then processing the remaining inputs produces the same reports as processing all the inputs.
+ * <p>
+ * A checkpoint is written to a temporary file that is then atomically moved into place, so a checkpoint is never left
+ * partially written.
+ */
+@SuppressWarnings({"unused", "FieldCanBeLocal", "MismatchedQueryAndUpdateOfCollection"})
+public final class AnalysisCheckpoint {
+    /**
+     * Number of inputs that had been processed.
+     */
+    private final int processedInputs;
+    /**
+     * Digest of the paths and modification times of the inputs that had been processed.
+     */
+    private final String inputsDigest;
+    private final long totalBranches;
+    private final List<long[]> coverageRows;
+    /**
+     * Base64-encoded JaCoCo execution data for the cumulative coverage.
+     */
+    private final String executionData;
+    private final List<FailureReport.FailureEntry> failures;
+    private final List<IncidentReport.IncidentEntry> incidents;
+    private final List<SlowInputReport.InputProfile> profiles;
+
+    private AnalysisCheckpoint(File[] inputFiles, int processedInputs, CoverageReport coverageReport,
+                               FailureReport failureReport, IncidentReport incidentReport,
+                               SlowInputReport slowInputReport) throws IOException {
+        this.processedInputs = processedInputs;
+        this.inputsDigest = computeDigest(inputFiles, processedInputs);
+        this.totalBranches = coverageReport.getTotalBranches();
+        this.coverageRows = coverageReport.getRows();
+        this.executionData = Base64.getEncoder().encodeToString(encode(coverageReport.getAccumulator()));
+        this.failures = failureReport.getEntries();
+        this.incidents = incidentReport.getEntries();
+        this.profiles = slowInputReport.getEntries();
+    }
+
+    /**
+     * Writes a checkpoint for the specified reports.
+     *
+     * @param file            the file to which the checkpoint should be written
+     * @param inputFiles      the inputs being analyzed in the order that they are processed
+     * @param processedInputs the number of inputs that have been recorded in the reports
+     * @throws IOException if an I/O error occurs writing the checkpoint
+     */
+    public static void write(File file, File[] inputFiles, int processedInputs, CoverageReport coverageReport,
+                             FailureReport failureReport, IncidentReport incidentReport,
+                             SlowInputReport slowInputReport) throws IOException {
+        AnalysisCheckpoint checkpoint = new AnalysisCheckpoint(inputFiles, processedInputs, coverageReport,
+                                                               failureReport, incidentReport, slowInputReport);
+        File temp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+        try {
+            ReportUtil.writeJson(temp, AnalysisCheckpoint.class, checkpoint);
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                       StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    /**
+     * Restores the checkpoint stored in the specified file into the specified reports. The reports must not have
+     * recorded anything.
+     *
+     * @param file       the file from which the checkpoint should be read
+     * @param inputFiles the inputs being analyzed in the order that they are processed
+     * @return the number of inputs that had been processed when the checkpoint was written
+     * @throws IOException if an I/O error occurs reading the checkpoint or the checkpoint does not match the
+     *                     specified inputs or reports
+     */
+    public static int restore(File file, File[] inputFiles, CoverageReport coverageReport,
+                              FailureReport failureReport, IncidentReport incidentReport,
+                              SlowInputReport slowInputReport) throws IOException {
+        AnalysisCheckpoint checkpoint = ReportUtil.readJson(file, AnalysisCheckpoint.class);
+        if (checkpoint == null) {
+            throw new IOException("Invalid checkpoint: " + file);
+        } else if (checkpoint.processedInputs > inputFiles.length
+                || !checkpoint.inputsDigest.equals(computeDigest(inputFiles, checkpoint.processedInputs))) {
+            throw new IOException("Checkpoint does not match the inputs being analyzed: " + file);
+        } else if (checkpoint.totalBranches != coverageReport.getTotalBranches()) {
+            throw new IOException("Checkpoint does not match the classes being analyzed: " + file);
+        }
+        ExecutionDataStore store = new ExecutionDataStore();
+        SessionInfoStore sessions = new SessionInfoStore();
+        CoverageAccumulator.read(Base64.getDecoder().decode(checkpoint.executionData), store, sessions);
+        coverageReport.restore(checkpoint.coverageRows, store, sessions);
+        failureReport.restore(checkpoint.failures);
+        incidentReport.restore(checkpoint.incidents);
+        slowInputReport.restore(checkpoint.profiles);
+        return checkpoint.processedInputs;
+    }
+
+    private static byte[] encode(CoverageAccumulator accumulator) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ExecutionDataWriter writer = new ExecutionDataWriter(out);
+        accumulator.getSessionInfoStore().accept(writer);
+        accumulator.getExecutionDataStore().accept(writer);
+        return out.toByteArray();
+    }
+
+    private static String computeDigest(File[] inputFiles, int count) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (int i = 0; i < count; i++) {
+                String entry = inputFiles[i].getAbsolutePath() + File.pathSeparator + inputFiles[i].lastModified();
+                digest.update(entry.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            StringBuilder builder = new StringBuilder();
+            for (byte b : digest.digest()) {
+                builder.append(String.format("%02x", b));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError("SHA-256 is required to be supported", e);
+        }
+    }
+}
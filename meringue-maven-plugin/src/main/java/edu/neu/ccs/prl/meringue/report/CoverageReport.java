@@ -1,22 +1,28 @@
 package edu.neu.ccs.prl.meringue.report;
 
+import edu.neu.ccs.prl.meringue.CoverageAccumulator;
 import edu.neu.ccs.prl.meringue.CoverageCalculator;
 import edu.neu.ccs.prl.meringue.JacocoReportFormat;
-import org.jacoco.core.tools.ExecFileLoader;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.SessionInfoStore;
 
-import java.io.*;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 
 public final class CoverageReport {
     private final CoverageCalculator calculator;
+    private final CoverageAccumulator accumulator;
     private final List<long[]> rows = new ArrayList<>();
     private final long firstTimestamp;
-    private byte[] lastExecData = null;
 
     public CoverageReport(CoverageCalculator calculator, long firstTimestamp) {
         this.calculator = calculator;
+        this.accumulator = new CoverageAccumulator(calculator);
         this.firstTimestamp = firstTimestamp;
     }
 
@@ -40,25 +46,42 @@ public final class CoverageReport {
     public void writeJacocoReports(String testDescription, File directory, Iterable<JacocoReportFormat> formats)
             throws IOException {
         for (JacocoReportFormat format : formats) {
-            calculator.createReport(lastExecData, testDescription, format, directory);
+            calculator.createReport(accumulator, testDescription, format, directory);
         }
     }
 
-    public void record(File inputFile, byte[] execData) throws IOException {
-        long time = inputFile.lastModified() - firstTimestamp;
-        lastExecData = (lastExecData == null) ? execData : mergeExecData(lastExecData, execData);
-        long coverage = calculator.calculate(lastExecData);
-        if (rows.isEmpty() || coverage > rows.get(rows.size() - 1)[1]) {
-            rows.add(new long[]{time, coverage});
+    List<long[]> getRows() {
+        return new ArrayList<>(rows);
+    }
+
+    CoverageAccumulator getAccumulator() {
+        return accumulator;
+    }
+
+    /**
+     * Restores the rows of this report and the cumulative coverage of its accumulator. This report must not have
+     * recorded any coverage.
+     */
+    void restore(List<long[]> restoredRows, ExecutionDataStore store, SessionInfoStore sessions) throws IOException {
+        if (!rows.isEmpty()) {
+            throw new IllegalStateException();
         }
+        accumulator.record(store, sessions);
+        rows.addAll(restoredRows);
     }
 
-    private static byte[] mergeExecData(byte[] execData1, byte[] execData2) throws IOException {
-        ExecFileLoader loader = new ExecFileLoader();
-        loader.load(new ByteArrayInputStream(execData1));
-        loader.load(new ByteArrayInputStream(execData2));
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        loader.save(out);
-        return out.toByteArray();
+    public void record(File inputFile, byte[] execData) throws IOException {
+        ExecutionDataStore store = new ExecutionDataStore();
+        SessionInfoStore sessions = new SessionInfoStore();
+        CoverageAccumulator.read(execData, store, sessions);
+        record(inputFile, store, sessions);
+    }
+
+    public void record(File inputFile, ExecutionDataStore store, SessionInfoStore sessions) throws IOException {
+        long time = inputFile.lastModified() - firstTimestamp;
+        long newlyCovered = accumulator.record(store, sessions);
+        if (rows.isEmpty() || newlyCovered > 0) {
+            rows.add(new long[]{time, accumulator.getCoveredBranches()});
+        }
     }
 }
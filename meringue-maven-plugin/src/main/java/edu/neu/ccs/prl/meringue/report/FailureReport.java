@@ -35,11 +35,22 @@ public final class FailureReport {
         return failureMap.size();
     }
 
+    List<FailureEntry> getEntries() {
+        return new LinkedList<>(failureMap.values());
+    }
+
+    void restore(List<FailureEntry> entries) {
+        failureMap.clear();
+        for (FailureEntry entry : entries) {
+            failureMap.put(entry.failure, entry);
+        }
+    }
+
     /**
      * Record type used for JSON reports.
      */
     @SuppressWarnings({"unused", "FieldCanBeLocal", "MismatchedQueryAndUpdateOfCollection"})
-    private static final class FailureEntry {
+    static final class FailureEntry {
         private final Failure failure;
         private final long firstTime;
         private final String firstMessage;
@@ -0,0 +1,86 @@
+package edu.neu.ccs.prl.meringue.report;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Records inputs whose replay could not be completed during analysis.
+ */
+public final class IncidentReport {
+    private final List<IncidentEntry> entries = new LinkedList<>();
+    private final long firstTimestamp;
+
+    public IncidentReport(long firstTimestamp) {
+        this.firstTimestamp = firstTimestamp;
+    }
+
+    public void record(File inputFile, Type type) {
+        record(inputFile, type, null);
+    }
+
+    /**
+     * Records an incident for the specified input.
+     *
+     * @param inputFile the input
+     * @param type      the type of the incident
+     * @param exitValue the exit value of the analysis JVM that failed while replaying the input or {@code null} if it
+     *                  is not known
+     */
+    public void record(File inputFile, Type type, Integer exitValue) {
+        if (inputFile == null || type == null) {
+            throw new NullPointerException();
+        }
+        entries.add(new IncidentEntry(inputFile, type, inputFile.lastModified() - firstTimestamp, exitValue));
+    }
+
+    public void write(File file) throws IOException {
+        ReportUtil.writeJsonList(file, IncidentEntry.class, entries);
+    }
+
+    List<IncidentEntry> getEntries() {
+        return new LinkedList<>(entries);
+    }
+
+    void restore(List<IncidentEntry> restored) {
+        entries.clear();
+        entries.addAll(restored);
+    }
+
+    public int getNumberOfIncidents(Type type) {
+        return (int) entries.stream().filter(e -> e.type == type).count();
+    }
+
+    public enum Type {
+        /**
+         * The replay of the input did not complete before the timeout elapsed.
+         */
+        TIMEOUT,
+        /**
+         * The analysis JVM failed while replaying the input.
+         */
+        CRASH
+    }
+
+    /**
+     * Record type used for JSON reports.
+     */
+    @SuppressWarnings({"unused", "FieldCanBeLocal"})
+    static final class IncidentEntry {
+        private final File inputFile;
+        private final Type type;
+        private final long time;
+        /**
+         * Exit value of the failed analysis JVM or {@code null} if it is not known.
+         */
+        private final Integer exitValue;
+
+        private IncidentEntry(File inputFile, Type type, long time, Integer exitValue) {
+            this.inputFile = inputFile;
+            this.type = type;
+            this.time = time;
+            this.exitValue = exitValue;
+        }
+    }
+}
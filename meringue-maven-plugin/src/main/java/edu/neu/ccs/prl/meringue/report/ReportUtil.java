@@ -5,6 +5,7 @@ import com.squareup.moshi.Moshi;
 import com.squareup.moshi.ToJson;
 import com.squareup.moshi.Types;
 import okio.BufferedSink;
+import okio.BufferedSource;
 import okio.Okio;
 
 import java.io.File;
@@ -29,6 +30,12 @@ public final class ReportUtil {
         }
     }
 
+    public static <T> T readJson(File file, Class<T> clazz) throws IOException {
+        try (BufferedSource source = Okio.buffer(Okio.source(file))) {
+            return MOSHI.adapter(clazz).fromJson(source);
+        }
+    }
+
     public static <T> void writeJsonList(File file, Class<T> clazz, List<T> values) throws IOException {
         try (BufferedSink sink = Okio.buffer(Okio.sink(file))) {
             MOSHI.adapter(Types.newParameterizedType(List.class, clazz))
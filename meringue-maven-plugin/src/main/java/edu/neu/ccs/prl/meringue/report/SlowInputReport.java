@@ -0,0 +1,216 @@
+package edu.neu.ccs.prl.meringue.report;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Records the time spent replaying each input whose replay completed or timed out and the CPU time used and bytes
+ * allocated by the thread that replayed it. All measurements are in nanoseconds or bytes; a measurement of {@code -1}
+ * indicates that the quantity could not be measured. Inputs for which a flight recording was captured link to the
+ * recording.
+ * <p>
+ * Timed-out inputs are marked as such and are listed before all other inputs when ordering from the slowest to the
+ * fastest input. Their wall time only covers the replay until it was stopped, so they are excluded from the
+ * distributions of the measurements.
+ */
+public final class SlowInputReport {
+    private final List<InputProfile> entries = new ArrayList<>();
+    private final long firstTimestamp;
+    /**
+     * Maximum number of inputs listed as the slowest inputs in the JSON report.
+     */
+    private final int limit;
+
+    public SlowInputReport(long firstTimestamp, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Invalid limit: " + limit);
+        }
+        this.firstTimestamp = firstTimestamp;
+        this.limit = limit;
+    }
+
+    /**
+     * Records the measurements of the specified input.
+     *
+     * @param inputFile      the input
+     * @param wallTime       the time spent replaying the input
+     * @param cpuTime        the CPU time used by the thread that replayed the input
+     * @param allocatedBytes the number of bytes allocated by the thread that replayed the input
+     * @param recording      the flight recording captured while replaying the input or {@code null} if no recording
+     *                       was captured
+     */
+    public void record(File inputFile, long wallTime, long cpuTime, long allocatedBytes, File recording) {
+        record(inputFile, wallTime, cpuTime, allocatedBytes, false, recording);
+    }
+
+    /**
+     * Records an input whose replay exceeded the timeout.
+     *
+     * @param inputFile the input
+     * @param wallTime  the time spent replaying the input before it was stopped
+     * @param recording the flight recording captured while replaying the input or {@code null} if no recording was
+     *                  captured
+     */
+    public void recordTimeout(File inputFile, long wallTime, File recording) {
+        record(inputFile, wallTime, -1, -1, true, recording);
+    }
+
+    private void record(File inputFile, long wallTime, long cpuTime, long allocatedBytes, boolean timedOut,
+                        File recording) {
+        if (inputFile == null) {
+            throw new NullPointerException();
+        }
+        entries.add(new InputProfile(inputFile, inputFile.lastModified() - firstTimestamp, wallTime, cpuTime,
+                                     allocatedBytes, timedOut, recording));
+    }
+
+    /**
+     * Writes the distributions of the measurements and the slowest inputs as JSON to the specified file.
+     *
+     * @param file the file to which the report should be written
+     * @throws IOException if an I/O error occurs writing the report
+     */
+    public void writeJson(File file) throws IOException {
+        List<InputProfile> slowest = sortBySlowest().stream().limit(limit).collect(Collectors.toList());
+        ReportUtil.writeJson(file, Summary.class, new Summary(entries, slowest));
+    }
+
+    /**
+     * Writes the measurements of every input ordered from the slowest to the fastest input as CSV to the specified
+     * file.
+     *
+     * @param file the file to which the report should be written
+     * @throws IOException if an I/O error occurs writing the report
+     */
+    public void writeCsv(File file) throws IOException {
+        try (PrintStream out = new PrintStream(new BufferedOutputStream(Files.newOutputStream(file.toPath())))) {
+            out.printf("input, time, wall_time_ns, cpu_time_ns, allocated_bytes, timed_out, recording%n");
+            for (InputProfile entry : sortBySlowest()) {
+                out.printf("%s, %d, %d, %d, %d, %b, %s%n", entry.inputFile.getAbsolutePath(), entry.time,
+                           entry.wallTime, entry.cpuTime, entry.allocatedBytes, entry.timedOut,
+                           entry.recording == null ? "" : entry.recording.getAbsolutePath());
+            }
+        }
+    }
+
+    private List<InputProfile> sortBySlowest() {
+        List<InputProfile> sorted = new ArrayList<>(entries);
+        // Stable, so inputs with equal wall times remain in the order in which they were recorded
+        sorted.sort(Comparator.comparing((InputProfile e) -> e.timedOut)
+                              .thenComparingLong(e -> e.wallTime)
+                              .reversed());
+        return sorted;
+    }
+
+    List<InputProfile> getEntries() {
+        return new ArrayList<>(entries);
+    }
+
+    void restore(List<InputProfile> restored) {
+        entries.clear();
+        if (restored != null) {
+            entries.addAll(restored);
+        }
+    }
+
+    /**
+     * Record type used for JSON reports.
+     */
+    @SuppressWarnings({"unused", "FieldCanBeLocal"})
+    static final class InputProfile {
+        private final File inputFile;
+        private final long time;
+        private final long wallTime;
+        private final long cpuTime;
+        private final long allocatedBytes;
+        private final boolean timedOut;
+        private final File recording;
+
+        private InputProfile(File inputFile, long time, long wallTime, long cpuTime, long allocatedBytes,
+                             boolean timedOut, File recording) {
+            this.inputFile = inputFile;
+            this.time = time;
+            this.wallTime = wallTime;
+            this.cpuTime = cpuTime;
+            this.allocatedBytes = allocatedBytes;
+            this.timedOut = timedOut;
+            this.recording = recording;
+        }
+    }
+
+    /**
+     * Record type used for JSON reports.
+     */
+    @SuppressWarnings({"unused", "FieldCanBeLocal"})
+    static final class Summary {
+        private final int profiledInputs;
+        private final int timedOutInputs;
+        private final Distribution wallTime;
+        private final Distribution cpuTime;
+        private final Distribution allocatedBytes;
+        private final List<InputProfile> slowestInputs;
+
+        private Summary(List<InputProfile> entries, List<InputProfile> slowestInputs) {
+            List<InputProfile> completed = entries.stream().filter(e -> !e.timedOut).collect(Collectors.toList());
+            this.profiledInputs = entries.size();
+            this.timedOutInputs = entries.size() - completed.size();
+            this.wallTime = Distribution.of(completed, e -> e.wallTime);
+            this.cpuTime = Distribution.of(completed, e -> e.cpuTime);
+            this.allocatedBytes = Distribution.of(completed, e -> e.allocatedBytes);
+            this.slowestInputs = slowestInputs;
+        }
+    }
+
+    /**
+     * Record type used for JSON reports. Percentiles are computed using the nearest-rank method.
+     */
+    @SuppressWarnings({"unused", "FieldCanBeLocal"})
+    static final class Distribution {
+        private final int count;
+        private final long total;
+        private final long mean;
+        private final long min;
+        private final long median;
+        private final long p90;
+        private final long p99;
+        private final long max;
+
+        private Distribution(long[] values) {
+            this.count = values.length;
+            long sum = 0;
+            for (long value : values) {
+                sum += value;
+            }
+            this.total = sum;
+            this.mean = values.length == 0 ? 0 : sum / values.length;
+            this.min = percentile(values, 0);
+            this.median = percentile(values, 50);
+            this.p90 = percentile(values, 90);
+            this.p99 = percentile(values, 99);
+            this.max = percentile(values, 100);
+        }
+
+        /**
+         * Creates the distribution of the known values of the specified measurement.
+         */
+        private static Distribution of(List<InputProfile> entries, ToLongFunction<InputProfile> measurement) {
+            return new Distribution(entries.stream().mapToLong(measurement).filter(v -> v >= 0).sorted().toArray());
+        }
+
+        private static long percentile(long[] sorted, int percent) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+            return sorted[Math.max(rank, 1) - 1];
+        }
+    }
+}